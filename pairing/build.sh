@@ -6,4 +6,4 @@ C_SRC=$1
 
 mkdir -p $C_PROJECT/lib
 
-gcc $C_PROJECT/src/$C_SRC -shared -o $C_PROJECT/lib/libPairing.so -fPIC -g -L$RELIC/relic-target/lib -I$RELIC/relic-target/include -I$RELIC/include -I$JAVA_PATH/include -I$JAVA_PATH/include/linux -I$C_PROJECT/headers -lrelic
\ No newline at end of file
+gcc $C_PROJECT/src/$C_SRC -shared -o $C_PROJECT/lib/libPairing.so -fPIC -g -L$RELIC/relic-target/lib -I$RELIC/relic-target/include -I$RELIC/include -I$JAVA_PATH/include -I$JAVA_PATH/include/linux -I$C_PROJECT/headers -lrelic -lpthread
\ No newline at end of file
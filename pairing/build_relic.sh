@@ -2,4 +2,4 @@
 RELIC_DIR=$(pwd)/relic
 RELIC_ZIP=$1
 
-unzip $RELIC_DIR/$RELIC_ZIP -d $RELIC_DIR/ && mkdir -p $RELIC_DIR/relic-target && cd $RELIC_DIR/relic-target && cmake -DFP_PRIME=256 ../ && make
\ No newline at end of file
+unzip $RELIC_DIR/$RELIC_ZIP -d $RELIC_DIR/ && mkdir -p $RELIC_DIR/relic-target && cd $RELIC_DIR/relic-target && cmake -DFP_PRIME=256 -DMULTI=PTHREAD ../ && make
\ No newline at end of file
@@ -26,18 +26,18 @@ JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_getOrderBytes
 /*
  * Class:     vss_commitment_constant_Pairing
  * Method:    commit
- * Signature: ([Ljava/lang/String;)[B
+ * Signature: ([B)[B
  */
 JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_commit
-  (JNIEnv *, jobject, jobjectArray);
+  (JNIEnv *, jobject, jbyteArray);
 
 /*
  * Class:     vss_commitment_constant_Pairing
- * Method:    createWitness
- * Signature: ([Ljava/lang/String;)[B
+ * Method:    createWitnesses
+ * Signature: ([B[B)[[B
  */
-JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_createWitness
-  (JNIEnv *, jobject, jobjectArray);
+JNIEXPORT jobjectArray JNICALL Java_vss_commitment_constant_Pairing_createWitnesses
+  (JNIEnv *, jobject, jbyteArray, jbyteArray);
 
 /*
  * Class:     vss_commitment_constant_Pairing
@@ -47,13 +47,21 @@ JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_createWitness
 JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_computePartialVerification
   (JNIEnv *, jobject, jbyteArray, jbyteArray, jbyteArray);
 
+/*
+ * Class:     vss_commitment_constant_Pairing
+ * Method:    createVerificationContext
+ * Signature: ([B)J
+ */
+JNIEXPORT jlong JNICALL Java_vss_commitment_constant_Pairing_createVerificationContext
+  (JNIEnv *, jobject, jbyteArray);
+
 /*
  * Class:     vss_commitment_constant_Pairing
  * Method:    verify
- * Signature: ([B[B[B)Z
+ * Signature: (J[B[B[B)Z
  */
 JNIEXPORT jboolean JNICALL Java_vss_commitment_constant_Pairing_verify
-  (JNIEnv *, jobject, jbyteArray, jbyteArray, jbyteArray);
+  (JNIEnv *, jobject, jlong, jbyteArray, jbyteArray, jbyteArray);
 
 /*
  * Class:     vss_commitment_constant_Pairing
@@ -65,19 +73,11 @@ JNIEXPORT jboolean JNICALL Java_vss_commitment_constant_Pairing_verifyWithoutPre
 
 /*
  * Class:     vss_commitment_constant_Pairing
- * Method:    endVerification
- * Signature: ()V
- */
-JNIEXPORT void JNICALL Java_vss_commitment_constant_Pairing_endVerification
-  (JNIEnv *, jobject);
-
-/*
- * Class:     vss_commitment_constant_Pairing
- * Method:    startVerification
- * Signature: ([B)V
+ * Method:    destroyVerificationContext
+ * Signature: (J)V
  */
-JNIEXPORT void JNICALL Java_vss_commitment_constant_Pairing_startVerification
-  (JNIEnv *, jobject, jbyteArray);
+JNIEXPORT void JNICALL Java_vss_commitment_constant_Pairing_destroyVerificationContext
+  (JNIEnv *, jobject, jlong);
 
 /*
  * Class:     vss_commitment_constant_Pairing
@@ -1,6 +1,8 @@
 #include <stdio.h>
 #include <stdlib.h>
 #include <stdbool.h>
+#include <stdint.h>
+#include <pthread.h>
 #include <jni.h>
 #include "relic.h"
 #include "vss_commitment_constant_Pairing.h"
@@ -13,13 +15,42 @@ ep_t g1;
 ep2_t g2;
 ep2_t gAlpha;
 fp12_t gPairing;
-fp12_t *commitmentPairing;
+/*
+ * RELIC must be compiled with MULTI=PTHREAD (see build_relic.sh), which gives each thread its own library context.
+ * Public parameters above are computed once and only read afterwards, while data of each commitment being verified
+ * is kept in a verification context owned by the caller.
+ * The context of each thread is cleaned when the thread exits, through the destructor of thread_context_key.
+ */
+__thread bool thread_context_initialized = false;
+pthread_key_t thread_context_key;
+pthread_once_t thread_context_key_once = PTHREAD_ONCE_INIT;
+
+void clean_thread_context(void *unused) {
+	if (!thread_context_initialized)
+		return;
+	core_clean();
+	thread_context_initialized = false;
+}
+
+void create_thread_context_key() {
+	pthread_key_create(&thread_context_key, clean_thread_context);
+}
+
+void ensure_thread_context() {
+	if (thread_context_initialized)
+		return;
+	pthread_once(&thread_context_key_once, create_thread_context_key);
+	core_init();
+	ep_param_set_any_pairf();
+	thread_context_initialized = true;
+	//any non-null value makes the destructor run when the thread exits
+	pthread_setspecific(thread_context_key, &thread_context_key);
+}
 
 void initialize(int threshold) {
 	t = threshold;
 	//initializing library and curve
-	core_init();
-	ep_param_set_any_pairf();
+	ensure_thread_context();
 
 	ep_param_print();
 
@@ -97,8 +128,8 @@ void clear() {
 	ep2_free(gAlpha);
 	fp12_free(gPairing);
 	free(pk);
-	free(commitmentPairing);
-	core_clean();
+	pthread_setspecific(thread_context_key, NULL);
+	clean_thread_context(NULL);
 }
 
 bn_t *read_number(JNIEnv *env, jbyteArray bytes) {
@@ -120,17 +151,6 @@ void throw_illegal_state_exception(JNIEnv *env, char *message) {
 	(*env)->ThrowNew(env, exClass, message);
 }
 
-bn_t *read_number_str(JNIEnv *env, jstring stringData) {
-	const char *str = (*env)->GetStringUTFChars(env, stringData, 0);
-	int size = (*env)->GetStringUTFLength(env, stringData);
-	bn_t *result = malloc(sizeof(bn_t));
-	bn_null(*result);
-	bn_new(*result);
-	bn_read_str(*result, str, size, 16);
-	(*env)->ReleaseStringUTFChars(env, stringData, str);
-	return result;
-}
-
 ep_t *read_point(JNIEnv *env, jbyteArray bytes) {
 	err_t e;
 	jsize bin_size = (*env)->GetArrayLength(env, bytes);
@@ -149,28 +169,39 @@ ep_t *read_point(JNIEnv *env, jbyteArray bytes) {
 	return result;
 }
 
-ep_t *compute_commitment_witness(int t, JNIEnv *env, jobjectArray coefficientsBytes) {
+/*
+ * coefficientsBytes contains t + 1 big-endian coefficients of the same size, starting with the highest degree one
+ */
+ep_t *compute_commitment_witness(int t, JNIEnv *env, jbyteArray coefficientsBytes) {
 	ep_t *result = malloc(sizeof(ep_t));
 	ep_null(*result);
 	ep_new(*result);
 	ep_set_infty(*result);
 
+	jsize bin_size = (*env)->GetArrayLength(env, coefficientsBytes);
+	int coef_size = bin_size / (t + 1);
+	jbyte *bin = malloc(sizeof(jbyte) * bin_size);
+	(*env)->GetByteArrayRegion(env, coefficientsBytes, 0, bin_size, bin);
+
+	bn_t coef;
+	bn_null(coef);
+	bn_new(coef);
+	ep_t temp;
+	ep_null(temp);
+	ep_new(temp);
+
 	for (int i = 0; i <= t; i++) {
 		int gIndex = t - i;
-		jstring arr = (*env)->GetObjectArrayElement(env, coefficientsBytes, i);
-		bn_t *coef = read_number_str(env, arr);
+		bn_read_bin(coef, (uint8_t *) bin + i * coef_size, coef_size);
 
-		ep_t temp;
-		ep_null(temp);
-		ep_new(temp);
-
-		ep_mul_slide(temp, pk[gIndex], *coef);
+		ep_mul_slide(temp, pk[gIndex], coef);
 
 		ep_add_basic(*result, *result, temp);
-		free(coef);
-		ep_free(temp);
 	}
 
+	bn_free(coef);
+	ep_free(temp);
+	free(bin);
 	return result;
 }
 
@@ -223,6 +254,7 @@ JNIEXPORT void JNICALL Java_vss_commitment_constant_Pairing_initialize(JNIEnv *e
 }
 
 JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_getOrderBytes(JNIEnv *env, jobject obj) {
+	ensure_thread_context();
 	int nBytes = bn_size_bin(order);
 	uint8_t* bytes = malloc(sizeof(uint8_t) * nBytes);
 	bn_write_bin(bytes, nBytes, order);
@@ -234,8 +266,9 @@ JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_getOrderBytes(
 }
 
 
-JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_commit(JNIEnv *env, jobject obj, 
-	jobjectArray coefficientsBytes) {
+JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_commit(JNIEnv *env, jobject obj,
+	jbyteArray coefficientsBytes) {
+	ensure_thread_context();
 	ep_t *commitment = compute_commitment_witness(t, env, coefficientsBytes);
 	
 	jbyteArray result = convert_point_to_bytes(env, commitment);
@@ -243,16 +276,93 @@ JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_commit(JNIEnv
 	return result;
 }
 
-JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_createWitness(JNIEnv *env, jobject obj, 
-	jobjectArray coefficientsBytes) {
-	ep_t *witness = compute_commitment_witness(t - 1, env, coefficientsBytes);
-	jbyteArray result =  convert_point_to_bytes(env, witness);
-	free(witness);
+/*
+ * Computes the witness of each shareholder x, i.e., g^(q(alpha)) with q(X) = (p(X) - p(x)) / (X - x). coefficientsBytes
+ * contains the t + 1 coefficients of p, starting with the highest degree one, and shareholdersBytes contains the
+ * shareholders, encoded with the same size as the coefficients.
+ */
+JNIEXPORT jobjectArray JNICALL Java_vss_commitment_constant_Pairing_createWitnesses(JNIEnv *env, jobject obj,
+	jbyteArray coefficientsBytes, jbyteArray shareholdersBytes) {
+	ensure_thread_context();
+	jsize coefs_bin_size = (*env)->GetArrayLength(env, coefficientsBytes);
+	int coef_size = coefs_bin_size / (t + 1);
+	jsize shareholders_bin_size = (*env)->GetArrayLength(env, shareholdersBytes);
+	int n_shareholders = shareholders_bin_size / coef_size;
+
+	jbyte *coefs_bin = malloc(sizeof(jbyte) * coefs_bin_size);
+	(*env)->GetByteArrayRegion(env, coefficientsBytes, 0, coefs_bin_size, coefs_bin);
+	jbyte *shareholders_bin = malloc(sizeof(jbyte) * shareholders_bin_size);
+	(*env)->GetByteArrayRegion(env, shareholdersBytes, 0, shareholders_bin_size, shareholders_bin);
+
+	//the independent term of p does not change the quotients
+	bn_t *coefs = malloc(sizeof(bn_t) * t);
+	bn_t *quotient = malloc(sizeof(bn_t) * t);
+	for (int i = 0; i < t; i++) {
+		bn_null(coefs[i]);
+		bn_new(coefs[i]);
+		bn_read_bin(coefs[i], (uint8_t *) coefs_bin + i * coef_size, coef_size);
+		bn_null(quotient[i]);
+		bn_new(quotient[i]);
+	}
+	bn_t x;
+	bn_null(x);
+	bn_new(x);
+	ep_t witness, temp;
+	ep_null(witness);
+	ep_null(temp);
+	ep_new(witness);
+	ep_new(temp);
+
+	jclass byteArrayClass = (*env)->FindClass(env, "[B");
+	jobjectArray result = (*env)->NewObjectArray(env, n_shareholders, byteArrayClass, NULL);
+
+	for (int s = 0; s < n_shareholders; s++) {
+		bn_read_bin(x, (uint8_t *) shareholders_bin + s * coef_size, coef_size);
+
+		//synthetic division by (X - x): q_0 = a_0 and q_i = a_i + x * q_(i-1)
+		if (t > 0)
+			bn_copy(quotient[0], coefs[0]);
+		for (int i = 1; i < t; i++) {
+			bn_mul(quotient[i], x, quotient[i - 1]);
+			bn_add(quotient[i], quotient[i], coefs[i]);
+			bn_mod_basic(quotient[i], quotient[i], order);
+		}
+
+		//g^(q(alpha)) = prod pk[t - 1 - i]^q_i, computed two terms at a time sharing the doublings
+		ep_set_infty(witness);
+		int i = 0;
+		for (; i + 1 < t; i += 2) {
+			ep_mul_sim(temp, pk[t - 1 - i], quotient[i], pk[t - 2 - i], quotient[i + 1]);
+			ep_add(witness, witness, temp);
+		}
+		if (i < t) {
+			ep_mul(temp, pk[t - 1 - i], quotient[i]);
+			ep_add(witness, witness, temp);
+		}
+		ep_norm(witness, witness);
+
+		jbyteArray witnessBytes = convert_point_to_bytes(env, &witness);
+		(*env)->SetObjectArrayElement(env, result, s, witnessBytes);
+		(*env)->DeleteLocalRef(env, witnessBytes);
+	}
+
+	for (int i = 0; i < t; i++) {
+		bn_free(coefs[i]);
+		bn_free(quotient[i]);
+	}
+	bn_free(x);
+	ep_free(witness);
+	ep_free(temp);
+	free(coefs);
+	free(quotient);
+	free(coefs_bin);
+	free(shareholders_bin);
 	return result;
 }
 
 JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_computePartialVerification (JNIEnv *env, jobject obj,
     jbyteArray xBytes, jbyteArray commitmentBytes, jbyteArray witnessBytes) {
+    ensure_thread_context();
     ep_t *witness = read_point(env, witnessBytes);
     if (witness == NULL) {
         throw_illegal_state_exception(env, "Witness is incorrect");
@@ -313,8 +423,14 @@ JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_computePartial
     return finalResult;
 }
 
-JNIEXPORT jboolean JNICALL Java_vss_commitment_constant_Pairing_verify(JNIEnv *env, jobject obj, 
-	jbyteArray xBytes, jbyteArray yBytes, jbyteArray witnessBytes) {
+JNIEXPORT jboolean JNICALL Java_vss_commitment_constant_Pairing_verify(JNIEnv *env, jobject obj,
+	jlong context, jbyteArray xBytes, jbyteArray yBytes, jbyteArray witnessBytes) {
+	ensure_thread_context();
+	fp12_t *commitmentPairing = (fp12_t *) (intptr_t) context;
+	if (commitmentPairing == NULL) {
+		throw_illegal_state_exception(env, "Verification context is not initialized");
+		return false;
+	}
 	ep_t *witness = read_point(env, witnessBytes);
 	if (witness == NULL) {
 		throw_illegal_state_exception(env, "Witness is incorrect");
@@ -361,6 +477,7 @@ JNIEXPORT jboolean JNICALL Java_vss_commitment_constant_Pairing_verify(JNIEnv *e
 
 JNIEXPORT jboolean JNICALL Java_vss_commitment_constant_Pairing_verifyWithoutPreComputation (JNIEnv *env, jobject obj,
     jbyteArray xBytes, jbyteArray yBytes, jbyteArray commitmentBytes, jbyteArray witnessBytes) {
+    ensure_thread_context();
     ep_t *commitment = read_point(env, commitmentBytes);
     if (commitment == NULL) {
     	throw_illegal_state_exception(env, "Commitment is incorrect");
@@ -421,20 +538,15 @@ JNIEXPORT jboolean JNICALL Java_vss_commitment_constant_Pairing_verifyWithoutPre
     return cmp == 0;
 }
 
-JNIEXPORT void JNICALL Java_vss_commitment_constant_Pairing_endVerification(JNIEnv *env, jobject obj) {
-	fp12_free(*commitmentPairing);
-	free(commitmentPairing);
-	commitmentPairing = NULL;
-}
-
-JNIEXPORT void JNICALL Java_vss_commitment_constant_Pairing_startVerification(JNIEnv *env, jobject obj, 
+JNIEXPORT jlong JNICALL Java_vss_commitment_constant_Pairing_createVerificationContext(JNIEnv *env, jobject obj,
 	jbyteArray commitmentBytes) {
+	ensure_thread_context();
 	ep_t *commitment = read_point(env, commitmentBytes);
 	if (commitment == NULL) {
 		throw_illegal_state_exception(env, "Commitment is incorrect");
-		return;
+		return 0;
 	}
-	commitmentPairing = malloc(sizeof(fp12_t));
+	fp12_t *commitmentPairing = malloc(sizeof(fp12_t));
 	fp12_null(*commitmentPairing);
 	fp12_new(*commitmentPairing);
 
@@ -442,9 +554,21 @@ JNIEXPORT void JNICALL Java_vss_commitment_constant_Pairing_startVerification(JN
 
 	ep_free(*commitment);
 	free(commitment);
+	return (jlong) (intptr_t) commitmentPairing;
+}
+
+JNIEXPORT void JNICALL Java_vss_commitment_constant_Pairing_destroyVerificationContext(JNIEnv *env, jobject obj,
+	jlong context) {
+	ensure_thread_context();
+	fp12_t *commitmentPairing = (fp12_t *) (intptr_t) context;
+	if (commitmentPairing == NULL)
+		return;
+	fp12_free(*commitmentPairing);
+	free(commitmentPairing);
 }
 
 JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_multiplyValues(JNIEnv *env, jobject obj, jobjectArray valuesBytes) {
+	ensure_thread_context();
 	jsize nValues = (*env)->GetArrayLength(env, valuesBytes);
 	
 	ep_t *sum = malloc(sizeof(ep_t));
@@ -471,6 +595,7 @@ JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_multiplyValues
 }
 
 JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_divideValues(JNIEnv *env, jobject obj, jbyteArray v1, jbyteArray v2) {
+    ensure_thread_context();
     ep_t *a = read_point(env, v1);
     ep_t *b = read_point(env, v2);
 
@@ -617,6 +742,7 @@ ep_t *compute_polynomial(bn_t *x, bn_t *xs[], ep_t *ys[], int n_points) {
 
 JNIEXPORT jbyteArray JNICALL Java_vss_commitment_constant_Pairing_interpolateAndEvaluateAt
 (JNIEnv *env, jobject obj, jbyteArray xBytes, jobjectArray valuesBytes) {
+    ensure_thread_context();
     jsize nValues = (*env)->GetArrayLength(env, valuesBytes);
 
 	bn_t *x = read_number(env, xBytes);
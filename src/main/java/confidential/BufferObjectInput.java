@@ -0,0 +1,170 @@
+package confidential;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads data written by BufferObjectOutput directly from the serialized byte array, without copying it.
+ */
+public final class BufferObjectInput implements ObjectInput {
+    private final ByteBuffer buffer;
+
+    private BufferObjectInput(byte[] data) {
+        this.buffer = ByteBuffer.wrap(data);
+    }
+
+    /**
+     * Creates an input over serialized data and checks its wire format version
+     * @param data Data serialized using BufferObjectOutput
+     * @return Binary input positioned after the version byte
+     * @throws IOException If data is empty or was serialized using a different wire format version
+     */
+    public static BufferObjectInput open(byte[] data) throws IOException {
+        if (data == null || data.length == 0)
+            throw new EOFException("Empty serialized data");
+        BufferObjectInput in = new BufferObjectInput(data);
+        byte version = in.buffer.get();
+        if (version != BufferObjectOutput.WIRE_FORMAT_VERSION)
+            throw new IOException("Unsupported wire format version " + version);
+        return in;
+    }
+
+    private void require(int n) throws EOFException {
+        if (buffer.remaining() < n)
+            throw new EOFException("Expected " + n + " bytes but only " + buffer.remaining() + " are available");
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? Byte.toUnsignedInt(buffer.get()) : -1;
+    }
+
+    @Override
+    public int read(byte[] b) {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0)
+            return 0;
+        if (!buffer.hasRemaining())
+            return -1;
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        require(len);
+        buffer.get(b, off, len);
+    }
+
+    @Override
+    public long skip(long n) {
+        int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int skipBytes(int n) {
+        return (int) skip(n);
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return Byte.toUnsignedInt(readByte());
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        require(Short.BYTES);
+        return buffer.getShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return Short.toUnsignedInt(readShort());
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        require(Character.BYTES);
+        return buffer.getChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        require(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        require(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        require(Float.BYTES);
+        return buffer.getFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        require(Double.BYTES);
+        return buffer.getDouble();
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        throw new IOException("Binary wire format does not support lines");
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        int len = readInt();
+        require(len);
+        String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), len, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + len);
+        return s;
+    }
+
+    @Override
+    public Object readObject() throws IOException {
+        throw new IOException("Binary wire format does not support serialized objects");
+    }
+
+    @Override
+    public void close() {
+
+    }
+}
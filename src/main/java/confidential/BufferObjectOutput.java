@@ -0,0 +1,176 @@
+package confidential;
+
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Length-prefixed binary output used in the request path instead of ObjectOutputStream. It writes directly into a
+ * reusable ByteBuffer taken from a per-thread pool, avoiding stream headers and block-data framing.
+ * Every message starts with WIRE_FORMAT_VERSION, which is checked by BufferObjectInput.
+ * Instances must be obtained with acquire() and returned to the pool by calling close().
+ */
+public final class BufferObjectOutput implements ObjectOutput {
+    public static final byte WIRE_FORMAT_VERSION = 1;
+    private static final int INITIAL_CAPACITY = 1024;
+    // Buffers that grew larger than this are not kept in the pool
+    private static final int MAX_POOLED_CAPACITY = 1 << 20;
+    private static final int MAX_POOLED_BUFFERS = 4;
+    private static final ThreadLocal<ArrayDeque<BufferObjectOutput>> pool =
+            ThreadLocal.withInitial(ArrayDeque::new);
+
+    private ByteBuffer buffer;
+    private boolean released;
+
+    private BufferObjectOutput() {
+        this.buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns an empty output from the pool of the calling thread with the wire format version already written
+     * @return Binary output
+     */
+    public static BufferObjectOutput acquire() {
+        BufferObjectOutput out = pool.get().pollFirst();
+        if (out == null)
+            out = new BufferObjectOutput();
+        out.buffer.clear();
+        out.released = false;
+        out.buffer.put(WIRE_FORMAT_VERSION);
+        return out;
+    }
+
+    /**
+     * Returns a copy of the bytes written so far
+     * @return Serialized data
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    public int size() {
+        return buffer.position();
+    }
+
+    private void ensureCapacity(int n) {
+        if (buffer.remaining() >= n)
+            return;
+        int newCapacity = Math.max(buffer.capacity() * 2, buffer.position() + n);
+        ByteBuffer newBuffer = ByteBuffer.allocate(newCapacity);
+        buffer.flip();
+        newBuffer.put(buffer);
+        buffer = newBuffer;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b) {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        buffer.put(b, off, len);
+    }
+
+    @Override
+    public void writeBoolean(boolean v) {
+        write(v ? 1 : 0);
+    }
+
+    @Override
+    public void writeByte(int v) {
+        write(v);
+    }
+
+    @Override
+    public void writeShort(int v) {
+        ensureCapacity(Short.BYTES);
+        buffer.putShort((short) v);
+    }
+
+    @Override
+    public void writeChar(int v) {
+        ensureCapacity(Character.BYTES);
+        buffer.putChar((char) v);
+    }
+
+    @Override
+    public void writeInt(int v) {
+        ensureCapacity(Integer.BYTES);
+        buffer.putInt(v);
+    }
+
+    @Override
+    public void writeLong(long v) {
+        ensureCapacity(Long.BYTES);
+        buffer.putLong(v);
+    }
+
+    @Override
+    public void writeFloat(float v) {
+        ensureCapacity(Float.BYTES);
+        buffer.putFloat(v);
+    }
+
+    @Override
+    public void writeDouble(double v) {
+        ensureCapacity(Double.BYTES);
+        buffer.putDouble(v);
+    }
+
+    @Override
+    public void writeBytes(String s) {
+        ensureCapacity(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            buffer.put((byte) s.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeChars(String s) {
+        ensureCapacity(s.length() * Character.BYTES);
+        for (int i = 0; i < s.length(); i++) {
+            buffer.putChar(s.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeUTF(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        writeInt(b.length);
+        write(b);
+    }
+
+    @Override
+    public void writeObject(Object obj) throws IOException {
+        throw new IOException("Binary wire format does not support serialized objects");
+    }
+
+    @Override
+    public void flush() {
+
+    }
+
+    /**
+     * Returns this output to the pool of the calling thread. The output must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (released)
+            return;
+        released = true;
+        ArrayDeque<BufferObjectOutput> buffers = pool.get();
+        if (buffer.capacity() <= MAX_POOLED_CAPACITY && buffers.size() < MAX_POOLED_BUFFERS)
+            buffers.offerFirst(this);
+    }
+}
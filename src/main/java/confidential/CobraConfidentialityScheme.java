@@ -15,9 +15,9 @@ import vss.facade.VSSFacade;
 import vss.interpolation.InterpolationStrategy;
 import vss.polynomial.Polynomial;
 import vss.secretsharing.Share;
+import vss.secretsharing.ThreadLocalCipher;
 
 import javax.crypto.BadPaddingException;
-import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import java.io.IOException;
@@ -28,18 +28,19 @@ import java.security.*;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Robin
  */
 public abstract class CobraConfidentialityScheme {
+    // Commitment schemes are stateless, so a single instance (and its generator table) is shared per curve
+    private static final Map<String, EllipticCurveCommitmentScheme> sharedEllipticCurveCommitmentSchemes =
+            new ConcurrentHashMap<>(EllipticCurveConstants.CURVES_COUNTER);
     protected final VSSFacade vss;
     private final Map<Integer, BigInteger> serverToShareholder;
     private final Map<BigInteger, Integer> shareholderToServer;
-    private final Cipher cipher;
-    private final Lock cipherLock;
+    private final ThreadLocalCipher cipher;
     private final boolean isLinearCommitmentScheme;
     private final boolean useTLSEncryption;
     protected KeysManager keysManager;
@@ -49,7 +50,6 @@ public abstract class CobraConfidentialityScheme {
     private final String confidentialSchemeId;
 
     public CobraConfidentialityScheme(View view) throws SecretSharingException {
-        cipherLock = new ReentrantLock(true);
         int[] processes = view.getProcesses();
         serverToShareholder = new HashMap<>(processes.length);
         shareholderToServer = new HashMap<>(processes.length);
@@ -75,7 +75,7 @@ public abstract class CobraConfidentialityScheme {
             properties.put(Constants.TAG_GENERATOR, configuration.getGenerator());
         }
         try {
-            cipher = Cipher.getInstance(configuration.getShareEncryptionAlgorithm());
+            cipher = new ThreadLocalCipher(configuration.getShareEncryptionAlgorithm(), true);
         } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
             throw new SecretSharingException("Failed to initialize the cipher");
         }
@@ -93,7 +93,6 @@ public abstract class CobraConfidentialityScheme {
     }
 
     public CobraConfidentialityScheme(View view, EllipticCurveParameters ellipticCurveParameters) throws SecretSharingException {
-        cipherLock = new ReentrantLock(true);
         int[] processes = view.getProcesses();
         serverToShareholder = new HashMap<>(processes.length);
         shareholderToServer = new HashMap<>(processes.length);
@@ -119,7 +118,7 @@ public abstract class CobraConfidentialityScheme {
             properties.put(Constants.TAG_GENERATOR, configuration.getGenerator());
         }
         try {
-            cipher = Cipher.getInstance(configuration.getShareEncryptionAlgorithm());
+            cipher = new ThreadLocalCipher(configuration.getShareEncryptionAlgorithm(), true);
         } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
             throw new SecretSharingException("Failed to initialize the cipher");
         }
@@ -150,15 +149,20 @@ public abstract class CobraConfidentialityScheme {
 
     public void registerEllipticCurve(EllipticCurveParameters ecParams) {
         try {
-            EllipticCurveCommitmentScheme nextEllipticCurve = new EllipticCurveCommitmentScheme(
-                    ecParams.prime(),
-                    ecParams.order(),
-                    ecParams.a(),
-                    ecParams.b(),
-                    ecParams.x(),
-                    ecParams.y(),
-                    ecParams.cofactor()
-            );
+            EllipticCurveCommitmentScheme nextEllipticCurve = sharedEllipticCurveCommitmentSchemes.computeIfAbsent(
+                    ecParams.curveName(), curveName -> {
+                        EllipticCurveCommitmentScheme scheme = new EllipticCurveCommitmentScheme(
+                                ecParams.prime(),
+                                ecParams.order(),
+                                ecParams.a(),
+                                ecParams.b(),
+                                ecParams.x(),
+                                ecParams.y(),
+                                ecParams.cofactor()
+                        );
+                        scheme.precomputeGeneratorTable();
+                        return scheme;
+                    });
             ellipticCurveCommitmentSchemesMap.put(ecParams.curveName(), nextEllipticCurve);
         } catch (Exception e) {
             e.printStackTrace();
@@ -255,24 +259,12 @@ public abstract class CobraConfidentialityScheme {
 
     protected byte[] encrypt(byte[] data, Key encryptionKey) throws InvalidKeyException,
             BadPaddingException, IllegalBlockSizeException {
-        try {
-            cipherLock.lock();
-            cipher.init(Cipher.ENCRYPT_MODE, encryptionKey);
-            return cipher.doFinal(data);
-        } finally {
-            cipherLock.unlock();
-        }
+        return cipher.encrypt(data, encryptionKey);
     }
 
     protected byte[] decrypt(byte[] data, Key decryptionKey) throws InvalidKeyException,
             BadPaddingException, IllegalBlockSizeException {
-        try {
-            cipherLock.lock();
-            cipher.init(Cipher.DECRYPT_MODE, decryptionKey);
-            return cipher.doFinal(data);
-        } finally {
-            cipherLock.unlock();
-        }
+        return cipher.decrypt(data, decryptionKey);
     }
 
     public BigInteger getCurrentEllipticCurveField() {
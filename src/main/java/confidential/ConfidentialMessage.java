@@ -28,8 +28,7 @@ public class ConfidentialMessage {
     }
 
     public byte[] serialize() {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutput out = new ObjectOutputStream(bos)) {
+        try (BufferObjectOutput out = BufferObjectOutput.acquire()) {
             out.writeInt(plainData == null ? -1 : plainData.length);
             if (plainData != null)
                 out.write(plainData);
@@ -38,9 +37,7 @@ public class ConfidentialMessage {
                 for (VerifiableShare share : shares)
                     share.writeExternal(out);
             }
-            out.flush();
-            bos.flush();
-            return bos.toByteArray();
+            return out.toByteArray();
         } catch (IOException e) {
             e.printStackTrace();
             return null;
@@ -48,8 +45,7 @@ public class ConfidentialMessage {
     }
 
     public static ConfidentialMessage deserialize(byte[] serializedData) {
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(serializedData);
-             ObjectInput in = new ObjectInputStream(bis)) {
+        try (ObjectInput in = BufferObjectInput.open(serializedData)) {
             int len = in.readInt();
             byte[] plainData = len == -1 ? null : new byte[len];
             if (len != -1)
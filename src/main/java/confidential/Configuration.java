@@ -21,6 +21,10 @@ public final class Configuration {
 	private boolean useTLSEncryption;
 	private int shareProcessingThreads;
 	private boolean verifyClientRequests;
+	private boolean preOrderingVerification = true;
+	private int verifiedRequestsCacheSize = 100000;
+	private long verifiedRequestsCacheTimeout = 60000;
+	private int fullSnapshotPeriod = 1;
 	private final BigInteger[] vandermondeMatrixInitializationValues;
 
 	private static Configuration INSTANT;
@@ -109,6 +113,18 @@ public final class Configuration {
 					case "cobra.verify.requests":
 						verifyClientRequests = Boolean.parseBoolean(value);
 						break;
+					case "cobra.verify.pre_ordering":
+						preOrderingVerification = Boolean.parseBoolean(value);
+						break;
+					case "cobra.verify.cache_size":
+						verifiedRequestsCacheSize = Integer.parseInt(value);
+						break;
+					case "cobra.verify.cache_timeout":
+						verifiedRequestsCacheTimeout = Long.parseLong(value);
+						break;
+					case "cobra.checkpoint.full_snapshot_period":
+						fullSnapshotPeriod = Integer.parseInt(value);
+						break;
 					case "cobra.send_all_shares_together":
 						sendAllSharesTogether = Boolean.parseBoolean(value);
 						break;
@@ -131,6 +147,22 @@ public final class Configuration {
 		return verifyClientRequests;
 	}
 
+	public boolean isPreOrderingVerification() {
+		return preOrderingVerification;
+	}
+
+	public int getVerifiedRequestsCacheSize() {
+		return verifiedRequestsCacheSize;
+	}
+
+	public long getVerifiedRequestsCacheTimeout() {
+		return verifiedRequestsCacheTimeout;
+	}
+
+	public int getFullSnapshotPeriod() {
+		return fullSnapshotPeriod;
+	}
+
 	public long getRenewalPeriod() {
 		return renewalPeriod;
 	}
@@ -4,6 +4,7 @@ import bftsmart.reconfiguration.IClientSideReconfigurationListener;
 import bftsmart.reconfiguration.views.View;
 import bftsmart.tom.ExtendedServiceProxy;
 import bftsmart.tom.util.ServiceResponse;
+import confidential.BufferObjectOutput;
 import confidential.Configuration;
 import confidential.ExtractedResponse;
 import confidential.MessageType;
@@ -20,10 +21,7 @@ import vss.commitment.constant.ConstantCommitment;
 import vss.facade.Mode;
 import vss.facade.SecretSharingException;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -222,8 +220,7 @@ public class PreComputedProxy implements IClientSideReconfigurationListener {
     }
 
     byte[] serializePrivateDataFor(int server, EncryptedPublishedShares[] shares) {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutput out = new ObjectOutputStream(bos)) {
+        try (BufferObjectOutput out = BufferObjectOutput.acquire()) {
             if (shares != null) {
                 BigInteger shareholder = confidentialityScheme.getShareholder(server);
                 for (EncryptedPublishedShares share : shares) {
@@ -240,18 +237,12 @@ public class PreComputedProxy implements IClientSideReconfigurationListener {
                 }
             }
 
-            out.flush();
-            bos.flush();
-            return bos.toByteArray();
-        } catch (IOException e) {
-            logger.error("Occurred while composing request", e);
-            return null;
+            return out.toByteArray();
         }
     }
 
     byte[] serializeCommonData(byte[] plainData, EncryptedPublishedShares[] shares) {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutput out = new ObjectOutputStream(bos)) {
+        try (BufferObjectOutput out = BufferObjectOutput.acquire()) {
 
             out.write((byte) MessageType.CLIENT.ordinal());
 
@@ -281,9 +272,7 @@ public class PreComputedProxy implements IClientSideReconfigurationListener {
                 }
             }
 
-            out.flush();
-            bos.flush();
-            return bos.toByteArray();
+            return out.toByteArray();
         } catch (IOException e) {
             logger.error("Occurred while composing request", e);
             return null;
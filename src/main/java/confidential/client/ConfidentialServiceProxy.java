@@ -2,6 +2,7 @@ package confidential.client;
 
 import bftsmart.tom.ExtendedServiceProxy;
 import bftsmart.tom.util.ServiceResponse;
+import confidential.BufferObjectOutput;
 import confidential.Configuration;
 import confidential.ExtractedResponse;
 import confidential.MessageType;
@@ -15,10 +16,7 @@ import vss.commitment.constant.ConstantCommitment;
 import vss.facade.Mode;
 import vss.facade.SecretSharingException;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.Map;
@@ -192,8 +190,7 @@ public class ConfidentialServiceProxy {
     }
 
     private byte[] serializePrivateDataFor(int server, EncryptedPublishedShares[] shares) {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutput out = new ObjectOutputStream(bos)) {
+        try (BufferObjectOutput out = BufferObjectOutput.acquire()) {
             if (shares != null) {
                 BigInteger shareholder = confidentialityScheme.getShareholder(server);
                 for (EncryptedPublishedShares share : shares) {
@@ -210,18 +207,12 @@ public class ConfidentialServiceProxy {
                 }
             }
 
-            out.flush();
-            bos.flush();
-            return bos.toByteArray();
-        } catch (IOException e) {
-            logger.error("Occurred while composing request", e);
-            return null;
+            return out.toByteArray();
         }
     }
 
     private byte[] serializeCommonData(byte[] plainData, EncryptedPublishedShares[] shares) {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutput out = new ObjectOutputStream(bos)) {
+        try (BufferObjectOutput out = BufferObjectOutput.acquire()) {
 
             out.write((byte) MessageType.CLIENT.ordinal());
 
@@ -252,9 +243,7 @@ public class ConfidentialServiceProxy {
                 }
             }
 
-            out.flush();
-            bos.flush();
-            return bos.toByteArray();
+            return out.toByteArray();
         } catch (IOException e) {
             logger.error("Occurred while composing request", e);
             return null;
@@ -5,6 +5,7 @@ import bftsmart.tom.util.Extractor;
 import bftsmart.tom.util.HashedExtractor;
 import bftsmart.tom.util.ServiceContent;
 import bftsmart.tom.util.ServiceResponse;
+import confidential.BufferObjectInput;
 import confidential.ConfidentialMessage;
 import confidential.ExtractedResponse;
 import org.slf4j.Logger;
@@ -18,10 +19,8 @@ import vss.secretsharing.OpenPublishedShares;
 import vss.secretsharing.Share;
 import vss.secretsharing.VerifiableShare;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.ObjectInput;
-import java.io.ObjectInputStream;
 import java.math.BigInteger;
 import java.util.*;
 
@@ -236,8 +235,7 @@ public abstract class ServersResponseHandler implements Comparator<ServiceConten
 		BigInteger[] shareholders = null;
 		Commitment[] commitments = null;
 		Share[] shares = null;
-		try (ByteArrayInputStream bis = new ByteArrayInputStream(response.getCommonContent());
-			 ObjectInput in = new ObjectInputStream(bis)) {
+		try (ObjectInput in = BufferObjectInput.open(response.getCommonContent())) {
 			int len = in.readInt();
 			if (len != -1) {
 				plainData = new byte[len];
@@ -265,8 +263,7 @@ public abstract class ServersResponseHandler implements Comparator<ServiceConten
 			return null;
 		}
 
-		try (ByteArrayInputStream bis = new ByteArrayInputStream(response.getReplicaSpecificContent());
-			 ObjectInput in = new ObjectInputStream(bis)) {
+		try (ObjectInput in = BufferObjectInput.open(response.getReplicaSpecificContent())) {
 			int nConfidentialData = in.readInt();
 			if (nConfidentialData != -1 && shareholders != null) {
 				commitments = new Commitment[nConfidentialData];
@@ -305,8 +302,7 @@ public abstract class ServersResponseHandler implements Comparator<ServiceConten
 		Commitment[] commitments = null;
 		Share[] shares = null;
 
-		try (ByteArrayInputStream bis = new ByteArrayInputStream(replicaSpecificContent);
-			 ObjectInput in = new ObjectInputStream(bis)) {
+		try (ObjectInput in = BufferObjectInput.open(replicaSpecificContent)) {
 			int nConfidentialData = in.readInt();
 			if (nConfidentialData != -1 && shareholders != null) {
 				commitments = new Commitment[nConfidentialData];
@@ -29,6 +29,9 @@ import java.util.concurrent.locks.ReentrantLock;
 
 public class Server implements ConfidentialSingleExecutable, RandomKeyPolynomialListener {
 	private final Logger logger = LoggerFactory.getLogger("keygen");
+	// Number of pre-generated keys kept per elliptic curve and number of keys below which the pool is refilled
+	private static final int KEY_POOL_CAPACITY = 10;
+	private static final int KEY_POOL_LOW_WATER_MARK = 5;
 	private final DistributedPolynomialManager distributedPolynomialManager;
 	private final ServiceReplica serviceReplica;
 	private final ConfidentialRecoverable cr;
@@ -100,15 +103,33 @@ public class Server implements ConfidentialSingleExecutable, RandomKeyPolynomial
 
 			boolean dbContainsIndex = signingKeyPairsMap.containsKey(indexId);
 			if (!dbContainsIndex && !signingKeyRequests.containsKey(indexId)) {
-				signingKeyRequests.put(indexId, new RequestData(indexId, messageContext));
-				int signingKeyGenerationId;
+				String confidentialitySchemeId;
 				switch (request.ellipticCurve()) {
-					case "BLS12_381" -> signingKeyGenerationId = generateSigningKey(EllipticCurveConstants.BLS12_381.NAME);
-					case "secp256k1" -> signingKeyGenerationId = generateSigningKey(EllipticCurveConstants.secp256k1.NAME);
-					case "secp256r1" -> signingKeyGenerationId = generateSigningKey(EllipticCurveConstants.secp256r1.NAME);
+					case "BLS12_381" -> confidentialitySchemeId = EllipticCurveConstants.BLS12_381.NAME;
+					case "secp256k1" -> confidentialitySchemeId = EllipticCurveConstants.secp256k1.NAME;
+					case "secp256r1" -> confidentialitySchemeId = EllipticCurveConstants.secp256r1.NAME;
 					default -> throw new InputMismatchException("Elliptic curve not supported: " + request.ellipticCurve());
 				}
+				signingKeyRequests.put(indexId, new RequestData(indexId, messageContext));
+				int f = serviceReplica.getReplicaContext().getCurrentView().getF();
+				int[] members = serviceReplica.getReplicaContext().getCurrentView().getProcesses();
+				// pools are started by the first request for each curve, so all replicas assign the same key ids
+				if (!distributedPolynomialManager.hasRandomKeyPool(confidentialitySchemeId))
+					distributedPolynomialManager.startRandomKeyPool(confidentialitySchemeId, KEY_POOL_CAPACITY,
+							KEY_POOL_LOW_WATER_MARK, f, members);
+				int signingKeyGenerationId = distributedPolynomialManager.claimPooledRandomKey(confidentialitySchemeId,
+						f, members);
+				if (signingKeyGenerationId == -1) {
+					signingKeyGenerationIds.put(generateSigningKey(confidentialitySchemeId), indexId);
+					return null;
+				}
 				signingKeyGenerationIds.put(signingKeyGenerationId, indexId);
+				RandomPolynomialContext pooledKey = distributedPolynomialManager.takePooledRandomKey(signingKeyGenerationId);
+				if (pooledKey != null) {
+					logger.info("Assigning pre-generated signing key with id {} to indexId {}", signingKeyGenerationId, indexId);
+					ECPoint publicKey = storeSigningKey(signingKeyGenerationId, pooledKey.getPoint());
+					return new ConfidentialMessage(publicKey.getEncoded(true));
+				}
 			} else if (dbContainsIndex) {
 				logger.warn("I already have a signing key with the provided identifier.");
 				return new ConfidentialMessage(signingKeyPairsMap.get(indexId).publicKey);
@@ -140,35 +161,42 @@ public class Server implements ConfidentialSingleExecutable, RandomKeyPolynomial
 	@Override
 	public void onRandomKeyPolynomialsCreation(RandomPolynomialContext context) {
 		lock.lock();
-		VerifiableShare privateKeyShare = context.getPoint();
-		ECPoint[] commitment = ((EllipticCurveCommitment)context.getPoint().getCommitments()).getCommitment();
-		ECPoint publicKey = commitment[commitment.length - 1];
-		onRandomKey(context.getInitialId(), privateKeyShare, publicKey);
+		onRandomKey(context.getInitialId(), context.getPoint());
 		lock.unlock();
 	}
 
-    private void onRandomKey(int id, VerifiableShare privateKeyShare, ECPoint publicKey) {
+    private void onRandomKey(int id, VerifiableShare privateKeyShare) {
 		String indexId = signingKeyGenerationIds.get(id);
 		logger.info("Received random signing key with indexId: {}", indexId);
 		if (indexId != null) {
 			RequestData requestData = signingKeyRequests.get(indexId);
-            signingKeyPairsMap.put(
-					indexId,
-					new KeyPair(privateKeyShare, publicKey.getEncoded(true))
-			);
-
-			System.out.println("Private key share:\n" + privateKeyShare.getShare().getShare().toString(16) + "\n");
-			System.out.println("Public key:\n" + new BigInteger(publicKey.getEncoded(true)).toString(16) + "\n");
-
+			ECPoint publicKey = storeSigningKey(id, privateKeyShare);
 			sendPublicKeyTo(requestData.messageContext, publicKey);
-
-			signingKeyGenerationIds.remove(id);
-			signingKeyRequests.remove(indexId);
         } else {
             logger.warn("Received an unknown polynomial id {}", id);
         }
     }
 
+	/**
+	 * Associates the random key with the index id of the request that claimed it
+	 * @return Public key
+	 */
+	private ECPoint storeSigningKey(int id, VerifiableShare privateKeyShare) {
+		String indexId = signingKeyGenerationIds.remove(id);
+		ECPoint[] commitment = ((EllipticCurveCommitment) privateKeyShare.getCommitments()).getCommitment();
+		ECPoint publicKey = commitment[commitment.length - 1];
+		signingKeyPairsMap.put(
+				indexId,
+				new KeyPair(privateKeyShare, publicKey.getEncoded(true))
+		);
+
+		System.out.println("Private key share:\n" + privateKeyShare.getShare().getShare().toString(16) + "\n");
+		System.out.println("Public key:\n" + new BigInteger(publicKey.getEncoded(true)).toString(16) + "\n");
+
+		signingKeyRequests.remove(indexId);
+		return publicKey;
+	}
+
     private void sendPublicKeyTo(MessageContext receiverContext, ECPoint publicKey) {
         byte[] encodedPublicKey = publicKey.getEncoded(true);
 		ConfidentialMessage response = new ConfidentialMessage(encodedPublicKey);
@@ -197,6 +225,7 @@ public class Server implements ConfidentialSingleExecutable, RandomKeyPolynomial
 				entry.getValue().writeExternal(out);
 				shares[index++] = entry.getValue();
 			}
+			cr.getDistributedPolynomialManager().writeRandomKeyPools(out);
 			out.flush();
 			bout.flush();
 			return new ConfidentialSnapshot(bout.toByteArray(), shares);
@@ -226,6 +255,8 @@ public class Server implements ConfidentialSingleExecutable, RandomKeyPolynomial
 				value.readExternal(in);
 				data.put(key, value);
 			}
+			// might be called while the replica is being initialized
+			cr.getDistributedPolynomialManager().readRandomKeyPools(in);
 		} catch (IOException | ClassCastException | ClassNotFoundException e) {
 			logger.error("Error while installing snapshot", e);
 		}
@@ -11,15 +11,30 @@ import org.slf4j.LoggerFactory;
 import vss.secretsharing.VerifiableShare;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 public class KVStoreServer implements ConfidentialSingleExecutable {
     private final Logger logger = LoggerFactory.getLogger("demo");
-    private Map<String, VerifiableShare> map;
+    private final TreeMap<String, VerifiableShare> state; // current state, used to execute requests
+    // The state of the snapshots is kept in layers so that a snapshot only freezes the current changes, leaving the
+    // copy and the serialization to the checkpoint thread. A null value in a layer of changes means the key was
+    // removed.
+    private TreeMap<String, VerifiableShare> frozenState; // state at the snapshot before the last one
+    private TreeMap<String, VerifiableShare> frozenChanges; // changes until the last snapshot or null
+    private TreeMap<String, VerifiableShare> changes; // changes since the last snapshot
+    private volatile MergedState mergedState; // frozen layers merged by the checkpoint thread
+    private final Set<String> changedKeys; // keys changed since the last snapshot or delta
 
     KVStoreServer(int processId) {
-        map = new TreeMap<>();
+        state = new TreeMap<>();
+        frozenState = new TreeMap<>();
+        changes = new TreeMap<>();
+        changedKeys = new TreeSet<>();
         new ConfidentialServerFacade(processId, this);
     }
 
@@ -33,33 +48,31 @@ public class KVStoreServer implements ConfidentialSingleExecutable {
             switch (op) {
                 case GET:
                     str = in.readUTF();
-                    value = map.get(str);
+                    value = state.get(str);
                     if (value != null)
                         return new ConfidentialMessage(null, value);
                     else
                         return new ConfidentialMessage();
                 case PUT:
                     str = in.readUTF();
-                    value = map.put(str, shares[0]);
+                    value = state.put(str, shares[0]);
+                    changes.put(str, shares[0]);
+                    changedKeys.add(str);
                     if (value != null)
                         return new ConfidentialMessage(null, value);
                     else
                         return new ConfidentialMessage();
                 case REMOVE:
                     str = in.readUTF();
-                    value = map.remove(str);
+                    value = state.remove(str);
+                    changes.put(str, null);
+                    changedKeys.add(str);
                     if (value != null)
                         return new ConfidentialMessage(null, value);
                     else
                         return new ConfidentialMessage();
                 case GET_ALL:
-                    if (map.isEmpty())
-                        return new ConfidentialMessage();
-                    VerifiableShare[] allValues = new VerifiableShare[map.size()];
-                    int i = 0;
-                    for (VerifiableShare share : map.values())
-                        allValues[i++] = share;
-                    return new ConfidentialMessage(null, allValues);
+                    return getAll();
             }
         } catch (IOException e) {
             logger.error("Failed to attend ordered request from {}", msgCtx.getSender(), e);
@@ -77,20 +90,13 @@ public class KVStoreServer implements ConfidentialSingleExecutable {
             switch (op) {
                 case GET:
                     str = in.readUTF();
-                    value = map.get(str);
+                    value = state.get(str);
                     if (value != null)
                         return new ConfidentialMessage(null, value);
                     else
                         return new ConfidentialMessage();
                 case GET_ALL:
-                    if (map.isEmpty())
-                        return new ConfidentialMessage();
-
-                    VerifiableShare[] allValues = new VerifiableShare[map.size()];
-					int i = 0;
-					for (VerifiableShare share : map.values())
-						allValues[i++] = share;
-					return new ConfidentialMessage(null, allValues);
+                    return getAll();
             }
         } catch (IOException e) {
             logger.error("Failed to attend unordered request from {}", msgCtx.getSender(), e);
@@ -98,14 +104,58 @@ public class KVStoreServer implements ConfidentialSingleExecutable {
         return null;
     }
 
+    private ConfidentialMessage getAll() {
+        if (state.isEmpty())
+            return new ConfidentialMessage();
+        return new ConfidentialMessage(null, state.values().toArray(new VerifiableShare[0]));
+    }
+
+    private static TreeMap<String, VerifiableShare> applyChanges(Map<String, VerifiableShare> state,
+                                                                 Map<String, VerifiableShare> changes) {
+        TreeMap<String, VerifiableShare> result = new TreeMap<>(state);
+        for (Map.Entry<String, VerifiableShare> e : changes.entrySet()) {
+            if (e.getValue() == null)
+                result.remove(e.getKey());
+            else
+                result.put(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Only freezes the current changes. The snapshot is serialized by the checkpoint thread, which also merges the
+     * frozen layers into the state used by the next snapshot.
+     */
     @Override
     public ConfidentialSnapshot getConfidentialSnapshot() {
+        MergedState merged = mergedState;
+        if (frozenChanges != null) {
+            if (merged != null && merged.changes == frozenChanges)
+                frozenState = merged.state;
+            else // the previous snapshot was not serialized yet
+                frozenState = applyChanges(frozenState, frozenChanges);
+        }
+        mergedState = null;
+        frozenChanges = changes;
+        changes = new TreeMap<>();
+        changedKeys.clear();
+
+        TreeMap<String, VerifiableShare> snapshotState = frozenState;
+        TreeMap<String, VerifiableShare> snapshotChanges = frozenChanges;
+        return ConfidentialSnapshot.deferred(() -> {
+            TreeMap<String, VerifiableShare> snapshot = applyChanges(snapshotState, snapshotChanges);
+            mergedState = new MergedState(snapshotChanges, snapshot);
+            return serializeState(snapshot);
+        });
+    }
+
+    private static ConfidentialSnapshot serializeState(Map<String, VerifiableShare> state) {
         try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
              ObjectOutput out = new ObjectOutputStream(bos)) {
-            out.writeInt(map.size());
-            VerifiableShare[] shares = new VerifiableShare[map.size()];
+            out.writeInt(state.size());
+            VerifiableShare[] shares = new VerifiableShare[state.size()];
             int i = 0;
-            for (Map.Entry<String, VerifiableShare> e : map.entrySet()) {
+            for (Map.Entry<String, VerifiableShare> e : state.entrySet()) {
                 out.writeUTF(e.getKey());
                 shares[i++] = e.getValue();
             }
@@ -118,18 +168,78 @@ public class KVStoreServer implements ConfidentialSingleExecutable {
         return null;
     }
 
+    @Override
+    public ConfidentialSnapshot getConfidentialSnapshotDelta() {
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+             ObjectOutput out = new ObjectOutputStream(bos)) {
+            out.writeInt(changedKeys.size());
+            List<VerifiableShare> shares = new ArrayList<>(changedKeys.size());
+            for (String key : changedKeys) {
+                VerifiableShare value = state.get(key);
+                out.writeUTF(key);
+                out.writeBoolean(value != null);
+                if (value != null)
+                    shares.add(value);
+            }
+            out.flush();
+            bos.flush();
+            changedKeys.clear();
+            return new ConfidentialSnapshot(bos.toByteArray(), shares.toArray(new VerifiableShare[0]));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    @Override
+    public void installConfidentialSnapshotDelta(ConfidentialSnapshot delta) {
+        try (ByteArrayInputStream bis = new ByteArrayInputStream(delta.getPlainData());
+             ObjectInput in = new ObjectInputStream(bis)) {
+            int size = in.readInt();
+            VerifiableShare[] shares = delta.getShares();
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                String key = in.readUTF();
+                VerifiableShare value = in.readBoolean() ? shares[j++] : null;
+                if (value == null)
+                    state.remove(key);
+                else
+                    state.put(key, value);
+                changes.put(key, value);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     @Override
     public void installConfidentialSnapshot(ConfidentialSnapshot snapshot) {
         try (ByteArrayInputStream bis = new ByteArrayInputStream(snapshot.getPlainData());
              ObjectInput in = new ObjectInputStream(bis)) {
             int size = in.readInt();
-            map = new TreeMap<>();
+            state.clear();
+            frozenState = new TreeMap<>();
+            frozenChanges = null;
+            changes = new TreeMap<>();
+            mergedState = null;
+            changedKeys.clear();
             VerifiableShare[] shares = snapshot.getShares();
             for (int i = 0; i < size; i++) {
-                map.put(in.readUTF(), shares[i]);
+                frozenState.put(in.readUTF(), shares[i]);
             }
+            state.putAll(frozenState);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    private static class MergedState {
+        private final TreeMap<String, VerifiableShare> changes;
+        private final TreeMap<String, VerifiableShare> state;
+
+        private MergedState(TreeMap<String, VerifiableShare> changes, TreeMap<String, VerifiableShare> state) {
+            this.changes = changes;
+            this.state = state;
+        }
+    }
 }
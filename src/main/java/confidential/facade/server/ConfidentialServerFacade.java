@@ -45,6 +45,6 @@ public final class ConfidentialServerFacade {
                                     Provider provider) {
         ConfidentialRecoverable cr =
                 new ConfidentialRecoverable(processId, confidentialExecutor);
-		new ServiceReplica(processId, "", cr, cr, requestVerifier, replier, loader, cr, cr);
+		new ServiceReplica(processId, "", cr, cr, cr.getPreOrderingVerifier(requestVerifier), replier, loader, cr, cr);
     }
 }
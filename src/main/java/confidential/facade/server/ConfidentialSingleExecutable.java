@@ -13,7 +13,40 @@ public interface ConfidentialSingleExecutable {
 
     ConfidentialMessage appExecuteUnordered(byte[] plainData, VerifiableShare[] shares, MessageContext msgCtx);
 
+    /**
+     * Returns a frozen view of the state. It is called in the execution thread, while the returned snapshot is
+     * serialized in a background thread, therefore it should only copy references to the state (e.g., shares) and
+     * the application must not modify the objects it references afterwards. Expensive work, such as serializing
+     * the state, can be left to the background thread with {@link ConfidentialSnapshot#deferred}.
+     * Applications supporting incremental snapshots must also stop tracking the changes done before this call.
+     * @return Snapshot of the state
+     */
     ConfidentialSnapshot getConfidentialSnapshot();
 
+    /**
+     * Installs a snapshot. Applications supporting incremental snapshots must also stop tracking the changes done
+     * before this call.
+     * @param snapshot Snapshot of the state
+     */
     void installConfidentialSnapshot(ConfidentialSnapshot snapshot);
+
+    /**
+     * Returns the changes done to the state since the last call to getConfidentialSnapshot,
+     * getConfidentialSnapshotDelta or installConfidentialSnapshot, with the same restrictions as
+     * getConfidentialSnapshot. The delta must only depend on the executed requests, since all replicas must produce
+     * the same delta.
+     * @return Changes to the state or null if the application does not support incremental snapshots
+     */
+    default ConfidentialSnapshot getConfidentialSnapshotDelta() {
+        return null;
+    }
+
+    /**
+     * Applies changes returned by getConfidentialSnapshotDelta to the state. Deltas are only created when
+     * getConfidentialSnapshotDelta returns a delta, so applications not supporting incremental snapshots never
+     * receive one.
+     * @param delta Changes to the state
+     */
+    default void installConfidentialSnapshotDelta(ConfidentialSnapshot delta) {
+    }
 }
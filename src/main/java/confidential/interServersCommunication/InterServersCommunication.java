@@ -5,14 +5,11 @@ import bftsmart.reconfiguration.ServerViewController;
 import bftsmart.tom.MessageContext;
 import bftsmart.tom.core.messages.ForwardedMessage;
 import bftsmart.tom.core.messages.TOMMessage;
+import confidential.BufferObjectOutput;
 import confidential.MessageType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -78,18 +75,12 @@ public class InterServersCommunication {
     }
 
     private byte[] serializeRequest(InterServersMessageType type, byte[] request) {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutput out = new ObjectOutputStream(bos)) {
+        try (BufferObjectOutput out = BufferObjectOutput.acquire()) {
             out.write((byte) MessageType.APPLICATION.ordinal());
             out.writeInt(1 + request.length);
             out.write((byte)type.ordinal());
             out.write(request);
-            out.flush();
-            bos.flush();
-            return bos.toByteArray();
-        } catch (IOException e) {
-            e.printStackTrace();
+            return out.toByteArray();
         }
-        return null;
     }
 }
@@ -36,12 +36,16 @@ public class DistributedPolynomial implements Runnable, InterServerMessageListen
     private final Lock entryLock;
     private final ExecutorService jobsProcessor;
     private final ExecutorService proposalSetVerifierExecutor;
-    private final BigInteger[][] vandermondeMatrix;
+    // single thread executors processing the messages and local calls of polynomial creations, selected by id
+    private final ExecutorService[] shards;
+    private final ServerViewController svController;
+    private final Map<BigInteger, VandermondeMatrix> vandermondeMatrices;
     private final Map<String, ServerConfidentialityScheme> confidentialitySchemes;
 
     public DistributedPolynomial(ServerViewController svController, InterServersCommunication serversCommunication,
                                  ServerConfidentialityScheme confidentialityScheme) {
         this.serversCommunication = serversCommunication;
+        this.svController = svController;
         this.field = confidentialityScheme.getField();
         this.confidentialityScheme = confidentialityScheme;
         this.rndGenerator = new SecureRandom(("confidential" + svController.getStaticConf().getProcessId()).getBytes());
@@ -67,23 +71,16 @@ public class DistributedPolynomial implements Runnable, InterServerMessageListen
         boolean isRegistered = serversCommunication.registerListener(polynomialMessageListener);
         if (!isRegistered)
             throw new IllegalStateException("Could not register polynomial message listener");
-        int rows = svController.getCurrentViewF() + 1;// svController.getCurrentViewN() - svController.getCurrentViewF();
-        int columns = svController.getCurrentViewF() + 1;//svController.getCurrentViewN();
-        this.vandermondeMatrix = new BigInteger[rows][columns];
-        BigInteger[] matrixInitValues = Configuration.getInstance().getVandermondeMatrixInitializationValues();
-
-
-        //TODO invert the matrix before using it
-        for (int r = 0; r < rows; r++) {
-            BigInteger exponent = BigInteger.valueOf(r);
-            for (int c = 0; c < columns; c++) {
-                vandermondeMatrix[r][c] = matrixInitValues[c].modPow(exponent, field);
-            }
-        }
+        this.vandermondeMatrices = new ConcurrentHashMap<>();
+        getVandermondeMatrix(field);
 
         jobsProcessor = Executors.newFixedThreadPool(Configuration.getInstance().getShareProcessingThreads());
         proposalSetVerifierExecutor = Executors.newFixedThreadPool(Configuration.getInstance()
                 .getShareProcessingThreads());
+        shards = new ExecutorService[Configuration.getInstance().getShareProcessingThreads()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = Executors.newSingleThreadExecutor();
+        }
 
         confidentialitySchemes = new HashMap<>();
     }
@@ -128,7 +125,9 @@ public class DistributedPolynomial implements Runnable, InterServerMessageListen
                 if (polynomialCreator == null)
                     return;
             }
-            polynomialCreator.sendNewPolynomialCreationRequest();
+            // messages of the creator are processed by its shard, which might already be processing some of them.
+            // Proposal sets are also validated by the consensus thread in isValidProposalSet.
+            shards[getShard(context.getId())].execute(polynomialCreator::sendNewPolynomialCreationRequest);
         } finally {
             entryLock.unlock();
         }
@@ -149,14 +148,33 @@ public class DistributedPolynomial implements Runnable, InterServerMessageListen
                     return;
                 }
             }
-            polynomialCreator.sendNewPolynomialCreationRequest();
+            // messages of the creator are processed by its shard, which might already be processing some of them.
+            // Proposal sets are also validated by the consensus thread in isValidProposalSet.
+            shards[getShard(context.getId())].execute(polynomialCreator::sendNewPolynomialCreationRequest);
         } finally {
             entryLock.unlock();
         }
     }
 
-    public BigInteger[][] getVandermondeMatrix() {
-        return vandermondeMatrix;
+    public VandermondeMatrix getVandermondeMatrix() {
+        return getVandermondeMatrix(field);
+    }
+
+    /**
+     * Returns the vandermonde matrix of the current view with entries modulo the given field, e.g., the order of an
+     * elliptic curve. The matrix is rebuilt when a reconfiguration changes f.
+     * @param field Field of the matrix entries
+     * @return Vandermonde matrix
+     */
+    public VandermondeMatrix getVandermondeMatrix(BigInteger field) {
+        int f = svController.getCurrentViewF();
+        VandermondeMatrix matrix = vandermondeMatrices.get(field);
+        if (matrix == null || matrix.getF() != f) {
+            matrix = new VandermondeMatrix(f, field,
+                    Configuration.getInstance().getVandermondeMatrixInitializationValues());
+            vandermondeMatrices.put(field, matrix);
+        }
+        return matrix;
     }
 
     private PolynomialCreator createNewPolynomialCreator(PolynomialCreationContext context, String confidentialitySchemeId) {
@@ -202,75 +220,101 @@ public class DistributedPolynomial implements Runnable, InterServerMessageListen
         }
     }
 
+    /**
+     * Dispatches polynomial messages to a shard selected by the polynomial creation id. Each shard is a single thread,
+     * therefore messages of the same polynomial creation are processed in order, while messages of different
+     * creations are processed in parallel.
+     */
     @Override
     public void run() {
-        ExecutorService executorService = Executors.newFixedThreadPool(
-                Configuration.getInstance().getShareProcessingThreads());
         while (true) {
             try {
                 InterServerMessageHolder message = pendingMessages.take();
+                int id;
+                try {
+                    id = PolynomialMessage.readId(message.getSerializedMessage(), 0);
+                } catch (IOException e) {
+                    logger.error("Failed to read polynomial creation id of message of type {}", message.getType(), e);
+                    continue;
+                }
+                shards[getShard(id)].execute(() -> processMessage(message));
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        for (ExecutorService shard : shards) {
+            shard.shutdown();
+        }
+        logger.debug("Exiting Distributed Polynomial");
+    }
+
+    private int getShard(int polynomialCreationId) {
+        return Math.floorMod(polynomialCreationId, shards.length);
+    }
+
+    private void processMessage(InterServerMessageHolder message) {
+        PolynomialMessage polynomialMessage;
+        byte[] serializedMessage = message.getSerializedMessage();
+        try (ByteArrayInputStream bis = new ByteArrayInputStream(serializedMessage,
+                PolynomialMessage.ID_HEADER_LENGTH, serializedMessage.length - PolynomialMessage.ID_HEADER_LENGTH);
+             ObjectInput in = new ObjectInputStream(bis)) {
+            switch (message.getType()) {
+                case NEW_POLYNOMIAL:
+                    polynomialMessage = new NewPolynomialMessage();
+                    break;
+                case POLYNOMIAL_PROPOSAL:
+                    polynomialMessage = new ProposalMessage();
+                    break;
+                case POLYNOMIAL_PROPOSAL_SET:
+                    polynomialMessage = new ProposalSetMessage();
+                    break;
+                case POLYNOMIAL_REQUEST_MISSING_PROPOSALS:
+                    polynomialMessage = new MissingProposalRequestMessage();
+                    break;
+                case POLYNOMIAL_MISSING_PROPOSALS:
+                    polynomialMessage = new MissingProposalsMessage();
+                    break;
+                default:
+                    logger.warn("Unknown polynomial message type {}", message.getType());
+                    return;
+            }
+            // Retrieve confidentiality scheme id from the polynomial message
+            String confidentialSchemeId = polynomialMessage.readConfidentialitySchemeId(in);
+            ServerConfidentialityScheme currentConfidentialScheme = confidentialitySchemes.get(confidentialSchemeId);
+
+            // Set or use the retrieved confidentiality scheme to deserialize the remaining message
+            if (message.getType() == InterServersMessageType.POLYNOMIAL_PROPOSAL) {
+                polynomialMessage = currentConfidentialScheme.deserializeProposalMessage(in);
+            } else if (message.getType() == InterServersMessageType.POLYNOMIAL_MISSING_PROPOSALS) {
+                polynomialMessage = currentConfidentialScheme.deserializeMissingProposalMessage(in);
+            } else {
+                polynomialMessage.readExternal(in);
+            }
+            PolynomialCreator polynomialCreator = polynomialCreators.get(polynomialMessage.getId());
+            if (polynomialCreator == null && polynomialMessage instanceof NewPolynomialMessage newPolynomialMessage) {
+                // synchronizes with local calls to createNewPolynomial
                 entryLock.lock();
-                PolynomialMessage polynomialMessage;
-                try (ByteArrayInputStream bis = new ByteArrayInputStream(message.getSerializedMessage());
-                     ObjectInput in = new ObjectInputStream(bis)) {
-                    switch (message.getType()) {
-                        case NEW_POLYNOMIAL:
-                            polynomialMessage = new NewPolynomialMessage();
-                            break;
-                        case POLYNOMIAL_PROPOSAL:
-                            polynomialMessage = new ProposalMessage();
-                            break;
-                        case POLYNOMIAL_PROPOSAL_SET:
-                            polynomialMessage = new ProposalSetMessage();
-                            break;
-                        case POLYNOMIAL_REQUEST_MISSING_PROPOSALS:
-                            polynomialMessage = new MissingProposalRequestMessage();
-                            break;
-                        case POLYNOMIAL_MISSING_PROPOSALS:
-                            polynomialMessage = new MissingProposalsMessage();
-                            break;
-                        default:
-                            logger.warn("Unknown polynomial message type {}", message.getType());
-                            continue;
-                    }
-                    // Retrieve confidentiality scheme id from the polynomial message
-                    String confidentialSchemeId = polynomialMessage.readConfidentialitySchemeId(in);
-                    ServerConfidentialityScheme currentConfidentialScheme = confidentialitySchemes.get(confidentialSchemeId);
-
-                    // Set or use the retrieved confidentiality scheme to deserialize the remaining message
-                    if (message.getType() == InterServersMessageType.POLYNOMIAL_PROPOSAL) {
-                        polynomialMessage = currentConfidentialScheme.deserializeProposalMessage(in);
-                    } else if (message.getType() == InterServersMessageType.POLYNOMIAL_MISSING_PROPOSALS) {
-                        polynomialMessage = currentConfidentialScheme.deserializeMissingProposalMessage(in);
-                    } else {
-                        polynomialMessage.readExternal(in);
-                    }
-                    PolynomialCreator polynomialCreator = polynomialCreators.get(polynomialMessage.getId());
-                    if (polynomialCreator == null && polynomialMessage instanceof NewPolynomialMessage newPolynomialMessage) {
+                try {
+                    polynomialCreator = polynomialCreators.get(newPolynomialMessage.getId());
+                    if (polynomialCreator == null) {
                         logger.debug("There is no active polynomial creation with id {}", newPolynomialMessage.getId());
                         logger.debug("Creating new polynomial creator for id {} and reason {}", newPolynomialMessage.getId(), newPolynomialMessage.getContext().getReason());
                         polynomialCreator = createNewPolynomialCreator(newPolynomialMessage.getContext(), confidentialSchemeId);
                     }
-                    if (polynomialCreator == null) {
-                        logger.debug("There is no active polynomial creation with id {}", polynomialMessage.getId());
-                        continue;
-                    }
-
-                    PolynomialCreator finalPolynomialCreator = polynomialCreator;
-                    PolynomialMessage finalPolynomialMessage = polynomialMessage;
-                    int cid = message.getMessageContext() == null ? -1 : message.getMessageContext().getConsensusId();
-                    executorService.execute(() -> finalPolynomialCreator.messageReceived(message.getType(), finalPolynomialMessage, cid));
-                } catch (IOException | ClassNotFoundException e) {
-                    logger.error("Failed to deserialize polynomial message of type {}", message.getType(), e);
+                } finally {
+                    entryLock.unlock();
                 }
-            } catch (InterruptedException e) {
-                break;
-            } finally {
-                entryLock.unlock();
             }
+            if (polynomialCreator == null) {
+                logger.debug("There is no active polynomial creation with id {}", polynomialMessage.getId());
+                return;
+            }
+
+            int cid = message.getMessageContext() == null ? -1 : message.getMessageContext().getConsensusId();
+            polynomialCreator.messageReceived(message.getType(), polynomialMessage, cid);
+        } catch (IOException | ClassNotFoundException e) {
+            logger.error("Failed to deserialize polynomial message of type {}", message.getType(), e);
         }
-        executorService.shutdown();
-        logger.debug("Exiting Distributed Polynomial");
     }
 
     public boolean isValidProposalSet(ProposalSetMessage message) {
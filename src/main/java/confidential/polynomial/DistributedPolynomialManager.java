@@ -5,7 +5,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import vss.secretsharing.VerifiableShare;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
@@ -25,6 +34,12 @@ public class DistributedPolynomialManager implements PolynomialCreationListener
     private final ConcurrentMap<Integer, RandomPolynomialContext> randomKeyPolynomialContexts;
     private final Lock lock;
     private final int processId;
+    // Pre-generated random keys: confidentiality scheme id -> ids of generated or being generated keys not claimed yet
+    private final Map<String, ArrayDeque<Integer>> randomKeyPools;
+    private final Map<String, int[]> randomKeyPoolLimits; // confidentiality scheme id -> [capacity, low-water mark]
+    private final Map<Integer, String> pooledRandomKeyIds; // key id -> confidentiality scheme id
+    private final Map<Integer, RandomPolynomialContext> pooledRandomKeys; // generated keys not delivered yet
+    private final Set<Integer> claimedRandomKeyIds; // claimed keys that are still being generated
 
     public DistributedPolynomialManager(DistributedPolynomial distributedPolynomial,
                                         ResharingPolynomialListener resharingListener,
@@ -38,6 +53,11 @@ public class DistributedPolynomialManager implements PolynomialCreationListener
         this.randomKeyPolynomialContexts = new ConcurrentHashMap<>();
         this.lock = new ReentrantLock(true);
         this.processId = distributedPolynomial.getProcessId();
+        this.randomKeyPools = new TreeMap<>();
+        this.randomKeyPoolLimits = new HashMap<>();
+        this.pooledRandomKeyIds = new HashMap<>();
+        this.pooledRandomKeys = new HashMap<>();
+        this.claimedRandomKeyIds = new HashSet<>();
         distributedPolynomial.registerCreationListener(this, PolynomialCreationReason.RECOVERY);
         distributedPolynomial.registerCreationListener(this, PolynomialCreationReason.RESHARING);
         distributedPolynomial.registerCreationListener(this, PolynomialCreationReason.RANDOM);
@@ -204,41 +224,215 @@ public class DistributedPolynomialManager implements PolynomialCreationListener
      * @return the unique internal identifier associated to the creation of the random key polynomial.
      */
     public int createRandomKeyPolynomial(int f, int[] members, String confidentialitySchemeId) {
+        return createRandomKeyPolynomials(f, members, confidentialitySchemeId, 1);
+    }
+
+    /**
+     * Sets up all the required objects to generate several random keys in a single execution of the polynomial
+     * generation protocol. Each key is delivered to the RandomKeyPolynomialListener in its own
+     * RandomPolynomialContext, whose ids are the returned id, id + 1, ..., id + nKeys - 1.
+     * @param f maximum number of faulty replicas
+     * @param members number of total replicas
+     * @param nKeys number of random keys to generate
+     * @return the unique internal identifier associated to the creation of the first random key polynomial.
+     */
+    public int createRandomKeyPolynomials(int f, int[] members, String confidentialitySchemeId, int nKeys) {
         if (randomKeyPolynomialListener == null)
             throw new IllegalStateException("RandomKeyPolynomialListener is not set in DistributedPolynomialManager");
         lock.lock();
-        int internalId = internalSequenceNumber++;
-        PolynomialContext context = new PolynomialContext(
-                f,
-                BigInteger.ZERO,
-                null,
-                members
-        );
-        logger.info("Starting creation of a polynomial with id {}", internalId);
+        int internalId = startRandomKeyPolynomials(f, members, confidentialitySchemeId, nKeys);
+        lock.unlock();
+        return internalId;
+    }
+
+    /**
+     * Starts a pool of pre-generated random keys for a confidentiality scheme and fills it up to its capacity.
+     * Keys are generated in background and are claimed by calling claimPooledRandomKey. The pool is filled again
+     * when the number of unclaimed keys drops below the low-water mark.
+     * Pools must be started and claimed in the same order by all the replicas, i.e., while executing ordered
+     * requests, so that all of them assign the same key to each claim. The state of the pools must be included in
+     * the application snapshot using writeRandomKeyPools and readRandomKeyPools.
+     * @param confidentialitySchemeId Confidentiality scheme of the keys
+     * @param capacity Number of keys to keep in the pool
+     * @param lowWaterMark Number of unclaimed keys below which the pool is filled again
+     * @param f maximum number of faulty replicas
+     * @param members replicas in the current view
+     */
+    public void startRandomKeyPool(String confidentialitySchemeId, int capacity, int lowWaterMark, int f,
+                                   int[] members) {
+        if (randomKeyPolynomialListener == null)
+            throw new IllegalStateException("RandomKeyPolynomialListener is not set in DistributedPolynomialManager");
+        lock.lock();
+        randomKeyPools.putIfAbsent(confidentialitySchemeId, new ArrayDeque<>(capacity));
+        randomKeyPoolLimits.put(confidentialitySchemeId, new int[] {capacity, lowWaterMark});
+        logger.info("Starting pool of {} random keys for {}", capacity, confidentialitySchemeId);
+        fillRandomKeyPool(confidentialitySchemeId, f, members);
+        lock.unlock();
+    }
+
+    public boolean hasRandomKeyPool(String confidentialitySchemeId) {
+        lock.lock();
+        try {
+            return randomKeyPools.containsKey(confidentialitySchemeId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the state of the random key pools, i.e., the limits of each pool and the ids of its unclaimed keys in
+     * claim order. Whether each key is already generated and its share are not written, because replicas finish
+     * the generations at different times and the state must be the same in all of them.
+     */
+    public void writeRandomKeyPools(ObjectOutput out) throws IOException {
+        lock.lock();
+        try {
+            out.writeInt(randomKeyPools.size());
+            for (Map.Entry<String, ArrayDeque<Integer>> entry : randomKeyPools.entrySet()) {
+                int[] limits = randomKeyPoolLimits.get(entry.getKey());
+                out.writeUTF(entry.getKey());
+                out.writeInt(limits[0]);
+                out.writeInt(limits[1]);
+                out.writeInt(entry.getValue().size());
+                for (int id : entry.getValue()) {
+                    out.writeInt(id);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the random key pools with the ones written by writeRandomKeyPools. Keys of the pools already
+     * generated by this replica are kept, and keys still being generated are stored when their generation finishes.
+     * The sequence number is advanced past the ids of the pools, so new keys do not reuse them.
+     */
+    public void readRandomKeyPools(ObjectInput in) throws IOException {
+        lock.lock();
+        try {
+            Map<Integer, String> oldPooledRandomKeyIds = new HashMap<>(pooledRandomKeyIds);
+            randomKeyPools.clear();
+            randomKeyPoolLimits.clear();
+            pooledRandomKeyIds.clear();
+            int nPools = in.readInt();
+            while (nPools-- > 0) {
+                String confidentialitySchemeId = in.readUTF();
+                int capacity = in.readInt();
+                int lowWaterMark = in.readInt();
+                int size = in.readInt();
+                ArrayDeque<Integer> pool = new ArrayDeque<>(capacity);
+                while (size-- > 0) {
+                    int id = in.readInt();
+                    pool.addLast(id);
+                    pooledRandomKeyIds.put(id, confidentialitySchemeId);
+                    internalSequenceNumber = Math.max(internalSequenceNumber, id + 1);
+                }
+                randomKeyPools.put(confidentialitySchemeId, pool);
+                randomKeyPoolLimits.put(confidentialitySchemeId, new int[] {capacity, lowWaterMark});
+            }
+            // keys no longer in the pools were claimed by requests this replica did not execute
+            for (Integer id : oldPooledRandomKeyIds.keySet()) {
+                if (!pooledRandomKeyIds.containsKey(id)) {
+                    pooledRandomKeys.remove(id);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Claims the oldest key of the pool of the confidentiality scheme, which might still be being generated.
+     * The claimed key must be retrieved using takePooledRandomKey.
+     * @return Id of the claimed key or -1 if the pool is not started or is empty
+     */
+    public int claimPooledRandomKey(String confidentialitySchemeId, int f, int[] members) {
+        lock.lock();
+        try {
+            ArrayDeque<Integer> pool = randomKeyPools.get(confidentialitySchemeId);
+            if (pool == null)
+                return -1;
+            Integer id = pool.pollFirst();
+            if (pool.size() < randomKeyPoolLimits.get(confidentialitySchemeId)[1])
+                fillRandomKeyPool(confidentialitySchemeId, f, members);
+            return id == null ? -1 : id;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the claimed key if it is already generated. Otherwise, the key is delivered to the
+     * RandomKeyPolynomialListener when its generation finishes.
+     * @param id Id returned by claimPooledRandomKey
+     * @return Generated key or null if it is still being generated
+     */
+    public RandomPolynomialContext takePooledRandomKey(int id) {
+        lock.lock();
+        try {
+            RandomPolynomialContext context = pooledRandomKeys.remove(id);
+            if (context == null) {
+                claimedRandomKeyIds.add(id);
+            } else {
+                pooledRandomKeyIds.remove(id);
+            }
+            return context;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fillRandomKeyPool(String confidentialitySchemeId, int f, int[] members) {
+        ArrayDeque<Integer> pool = randomKeyPools.get(confidentialitySchemeId);
+        int missingKeys = randomKeyPoolLimits.get(confidentialitySchemeId)[0] - pool.size();
+        if (missingKeys <= 0)
+            return;
+        int firstId = startRandomKeyPolynomials(f, members, confidentialitySchemeId, missingKeys);
+        for (int id = firstId; id < firstId + missingKeys; id++) {
+            pooledRandomKeyIds.put(id, confidentialitySchemeId);
+            pool.addLast(id);
+        }
+    }
+
+    private int startRandomKeyPolynomials(int f, int[] members, String confidentialitySchemeId, int nKeys) {
+        int internalId = internalSequenceNumber;
+        internalSequenceNumber += nKeys; // each key is identified by its own id
+        PolynomialContext[] contexts = new PolynomialContext[nKeys];
+        for (int i = 0; i < nKeys; i++) {
+            contexts[i] = new PolynomialContext(
+                    f,
+                    BigInteger.ZERO,
+                    null,
+                    members
+            );
+        }
+        logger.info("Starting creation of {} random key(s) with id {}", nKeys, internalId);
         int leader = members[internalId % members.length];
         PolynomialCreationContext creationContext = new PolynomialCreationContext(
                 internalId,
                 internalId,
-                1,
+                nKeys,
                 false,
                 false,
                 leader,
                 PolynomialCreationReason.RANDOM_KEY,
-                context
+                contexts
         );
         distributedPolynomial.createNewPolynomial(creationContext, confidentialitySchemeId);
 
-        RandomPolynomialContext randomPolynomialContext = new RandomPolynomialContext(
-                internalId,
-                1,
-                f);
-        if (!randomKeyPolynomialContexts.containsKey(internalId)) {
-            randomPolynomialContext.startTime();
-            randomKeyPolynomialContexts.put(internalId, randomPolynomialContext);
-        } else {
-            logger.warn("There is already an active random key polynomial creation with internal id {}", internalId);
+        for (int id = internalId; id < internalId + nKeys; id++) {
+            RandomPolynomialContext randomPolynomialContext = new RandomPolynomialContext(
+                    id,
+                    1,
+                    f);
+            if (!randomKeyPolynomialContexts.containsKey(id)) {
+                randomPolynomialContext.startTime();
+                randomKeyPolynomialContexts.put(id, randomPolynomialContext);
+            } else {
+                logger.warn("There is already an active random key polynomial creation with internal id {}", id);
+            }
         }
-        lock.unlock();
         return internalId;
     }
 
@@ -269,18 +463,35 @@ public class DistributedPolynomialManager implements PolynomialCreationListener
     }
 
     private void handleRandomKeyPolynomial(PolynomialCreationContext context, int consensusId, VerifiableShare[][] points) {
-        RandomPolynomialContext polynomialContext = randomKeyPolynomialContexts.remove(context.getInternalId());
+        // keys extracted with the vandermonde matrix are numbered consecutively after the keys of previous polynomials
+        int id = context.getInternalId();
+        for (int i = 0; i < points.length; i++) {
+            for (VerifiableShare point : points[i]) {
+                handleRandomKey(id++, context.getContexts()[i].getF(), consensusId, point);
+            }
+        }
+        internalSequenceNumber = Math.max(internalSequenceNumber, id);
+    }
+
+    private void handleRandomKey(int id, int f, int consensusId, VerifiableShare point) {
+        RandomPolynomialContext polynomialContext = randomKeyPolynomialContexts.remove(id);
         if (polynomialContext == null) {
             logger.debug("There is no random polynomial context. Creating one");
             polynomialContext = new RandomPolynomialContext(
-                    context.getInternalId(),
-                    context.getNPolynomials(),
-                    context.getContexts()[0].getF()
+                    id,
+                    1,
+                    f
             );
         }
         polynomialContext.endTime();
-        polynomialContext.setPoint(points[0][0]);
+        polynomialContext.setPoint(point);
         polynomialContext.updateCID(consensusId);
+        if (pooledRandomKeyIds.containsKey(id) && !claimedRandomKeyIds.remove(id)) {
+            logger.debug("Storing pre-generated random key with id {}", id);
+            pooledRandomKeys.put(id, polynomialContext);
+            return;
+        }
+        pooledRandomKeyIds.remove(id);
         randomKeyPolynomialListener.onRandomKeyPolynomialsCreation(polynomialContext);
     }
 
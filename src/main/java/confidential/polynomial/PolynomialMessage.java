@@ -1,11 +1,18 @@
 package confidential.polynomial;
 
+import java.io.EOFException;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 
 public class PolynomialMessage implements Externalizable {
+    /**
+     * Serialized polynomial messages start with the polynomial creation id as a 4-byte big-endian header, so that the
+     * id can be read without deserializing the message. The header is written in serialize of PolynomialCreator.
+     */
+    public static final int ID_HEADER_LENGTH = Integer.BYTES;
+
     private int id;
     private int sender;
     private String confidentialitySchemeId;
@@ -37,7 +44,21 @@ public class PolynomialMessage implements Externalizable {
     }
 
     /**
-     * The confidentiality scheme id is always encoded at the start. Encode is done in serialize of PolynomialCreator.
+     * Reads the polynomial creation id from the header of a serialized polynomial message
+     * @param serializedMessage Serialized message
+     * @param offset Position of the header in the serialized message
+     * @return Polynomial creation id
+     * @throws IOException If the message is too short to contain the header
+     */
+    public static int readId(byte[] serializedMessage, int offset) throws IOException {
+        if (serializedMessage.length - offset < ID_HEADER_LENGTH)
+            throw new EOFException("Polynomial message is too short");
+        return ((serializedMessage[offset] & 0xFF) << 24) | ((serializedMessage[offset + 1] & 0xFF) << 16)
+                | ((serializedMessage[offset + 2] & 0xFF) << 8) | (serializedMessage[offset + 3] & 0xFF);
+    }
+
+    /**
+     * The confidentiality scheme id is always encoded at the start, after the id header. Encode is done in serialize of PolynomialCreator.
      */
     public String readConfidentialitySchemeId(ObjectInput in) throws IOException {
         confidentialitySchemeId = in.readUTF();
@@ -0,0 +1,99 @@
+package confidential.polynomial;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Vandermonde matrix used to extract f + 1 random polynomials from f + 1 contributions, with entries modulo a field.
+ * The matrix depends only on f, so it is computed once per view and field and shared by all polynomial creations.
+ * The initialization values are checked to be distinct modulo the field, so the matrix is invertible.
+ */
+public final class VandermondeMatrix {
+    private final int f;
+    private final BigInteger field;
+    private final BigInteger[][] matrix;
+
+    /**
+     * @param f Maximum number of faulty replicas of the view
+     * @param field Field of the matrix entries
+     * @param initializationValues Value of each column of the matrix. Must contain at least f + 1 values.
+     * @throws IllegalArgumentException If the resulting matrix is not invertible
+     */
+    public VandermondeMatrix(int f, BigInteger field, BigInteger[] initializationValues) {
+        this.f = f;
+        this.field = field;
+        int size = f + 1;// rows: n - f; columns: n
+        checkDistinctValues(initializationValues, size, field);
+        this.matrix = new BigInteger[size][size];
+        for (int r = 0; r < size; r++) {
+            BigInteger exponent = BigInteger.valueOf(r);
+            for (int c = 0; c < size; c++) {
+                matrix[r][c] = initializationValues[c].modPow(exponent, field);
+            }
+        }
+    }
+
+    public int getF() {
+        return f;
+    }
+
+    public BigInteger getField() {
+        return field;
+    }
+
+    public BigInteger[][] getMatrix() {
+        return matrix;
+    }
+
+    /**
+     * Multiplies the matrix by the points of the contributions
+     * @param points Point of each contribution
+     * @return Point of each extracted polynomial
+     */
+    public BigInteger[] multiply(BigInteger[] points) {
+        BigInteger[] result = new BigInteger[matrix.length];
+        for (int r = 0; r < matrix.length; r++) {
+            BigInteger temp = BigInteger.ZERO;
+            for (int c = 0; c < points.length; c++) {
+                temp = temp.add(matrix[r][c].multiply(points[c]));
+            }
+            result[r] = temp.mod(field);
+        }
+        return result;
+    }
+
+    /**
+     * Combines Feldman commitments of the contributions into the commitments of the extracted polynomials, i.e.,
+     * result[r][i] = prod_c commitments[c][i] ^ matrix[r][c] mod p
+     * @param commitments Commitment values of each contribution
+     * @param p Modulus of the commitment values
+     * @return Commitment values of each extracted polynomial
+     */
+    public BigInteger[][] combineCommitments(BigInteger[][] commitments, BigInteger p) {
+        int size = commitments[0].length;
+        BigInteger[][] result = new BigInteger[matrix.length][size];
+        for (int r = 0; r < matrix.length; r++) {
+            for (int i = 0; i < size; i++) {
+                BigInteger temp = BigInteger.ONE;
+                for (int c = 0; c < commitments.length; c++) {
+                    BigInteger x = matrix[r][c];
+                    // the first row contains only ones
+                    temp = temp.multiply(x.equals(BigInteger.ONE) ? commitments[c][i]
+                            : commitments[c][i].modPow(x, p)).mod(p);
+                }
+                result[r][i] = temp;
+            }
+        }
+        return result;
+    }
+
+    private static void checkDistinctValues(BigInteger[] values, int size, BigInteger field) {
+        Set<BigInteger> distinctValues = new HashSet<>(size);
+        for (int i = 0; i < size; i++) {
+            if (!distinctValues.add(values[i].mod(field)))
+                throw new IllegalArgumentException("Vandermonde matrix is not invertible. Initialization values must " +
+                        "be distinct modulo the field");
+        }
+    }
+}
@@ -30,11 +30,15 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class PolynomialCreator {
+    // Number of chunks per processing thread in which polynomials are split when computed in parallel
+    private static final int CHUNKS_PER_THREAD = 4;
     protected Logger logger = LoggerFactory.getLogger("polynomial_generation");
     protected final PolynomialCreationContext creationContext;
     private final int quorumThreshold;
@@ -60,6 +64,7 @@ public abstract class PolynomialCreator {
     private boolean iHaveSentNewPolyRequest;
     private final Lock lock;
     private final BigInteger p;
+    private final int parallelism;
     private final Lock proposalSetLock = new ReentrantLock(true);
     private final Condition waitingMissingProposalsCondition = proposalSetLock.newCondition();
 
@@ -95,6 +100,7 @@ public abstract class PolynomialCreator {
         this.invalidProposals = ConcurrentHashMap.newKeySet(maxMessages);
         this.newPolynomialRequestsFrom = ConcurrentHashMap.newKeySet(maxMessages);
         this.p = new BigInteger(Configuration.getInstance().getPrimeField(), 16);
+        this.parallelism = Configuration.getInstance().getShareProcessingThreads() * CHUNKS_PER_THREAD;
     }
 
     public ServerConfidentialityScheme getConfidentialScheme() {
@@ -225,6 +231,66 @@ public abstract class PolynomialCreator {
         return points;
     }
 
+    /**
+     * Runs the job for every index from 0 to n - 1 in the jobs processor of DistributedPolynomial and waits for all of
+     * them to finish. Indexes are split in contiguous chunks, so that creations with many polynomials do not submit
+     * one task per polynomial.
+     * @param n Number of indexes, usually the number of polynomials
+     * @param job Job to execute for each index
+     */
+    void computeInParallel(int n, IntConsumer job) {
+        validateInParallel(n, i -> {
+            job.accept(i);
+            return true;
+        });
+    }
+
+    /**
+     * Runs the validator for every index from 0 to n - 1 in the jobs processor of DistributedPolynomial and waits for
+     * all of them to finish. Remaining indexes are skipped as soon as one is invalid.
+     * @param n Number of indexes, usually the number of polynomials
+     * @param validator Validation to execute for each index
+     * @return True if all indexes are valid
+     */
+    boolean validateInParallel(int n, IntPredicate validator) {
+        AtomicBoolean isValid = new AtomicBoolean(true);
+        int nChunks = Math.min(n, parallelism);
+        if (nChunks <= 1) {
+            validateChunk(0, n, validator, isValid);
+            return isValid.get();
+        }
+        CountDownLatch latch = new CountDownLatch(nChunks);
+        for (int c = 0; c < nChunks; c++) {
+            int start = (int) ((long) n * c / nChunks);
+            int end = (int) ((long) n * (c + 1) / nChunks);
+            distributedPolynomial.submitJob(() -> {
+                try {
+                    validateChunk(start, end, validator, isValid);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        return isValid.get();
+    }
+
+    private void validateChunk(int start, int end, IntPredicate validator, AtomicBoolean isValid) {
+        try {
+            for (int i = start; i < end && isValid.get(); i++) {
+                if (!validator.test(i))
+                    isValid.set(false);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to process polynomial of creation {}", creationContext.getId(), e);
+            isValid.set(false);
+        }
+    }
+
     public void processProposal(ProposalMessage message) {
         if (proposals.containsKey(message.getSender())) {
             logger.warn("Duplicate proposal from {}. Ignoring.", message.getSender());
@@ -512,74 +578,79 @@ public abstract class PolynomialCreator {
         }
         VerifiableShare[][] result;
         if (useMatrix) {
-            result = new VerifiableShare[finalPoint.length][faultsThreshold + 1];
-            for (int j = 0; j < finalPoint.length; j++) {
-                result[j] = computeResultUsingVandermondeMatrix(finalPoint[j], allCommitments[j],
-                        creationContext.combineCommitments());
-            }
+            result = computeResultUsingVandermondeMatrix(finalPoint, allCommitments);
         } else {
             result = new VerifiableShare[finalPoint.length][1];
             for (int j = 0; j < finalPoint.length; j++) {
                 Share share = new Share(shareholderId, finalPoint[j][0]);
-                Commitment commitments = null;
-                try {
-                    commitments = commitmentScheme.sumCommitments(allCommitments[j]);
-                } catch (SecretSharingException e) {
-                    logger.error("Failed to combine commitments", e);
-                }
-                result[j][0] =  new VerifiableShare(share,
-                        commitmentScheme.extractCommitment(shareholderId, commitments), null);
+                result[j][0] =  new VerifiableShare(share, sumCommitments(allCommitments[j]), null);
             }
         }
         creationListener.onPolynomialCreationSuccess(creationContext, consensusId, result);
     }
 
-    private VerifiableShare[] computeResultUsingVandermondeMatrix(BigInteger[] points, Commitment[] commitments,
-                                                                  boolean combineCommitments) {
+    /**
+     * Combines the commitments of the contributions to a polynomial into the commitment of their sum
+     */
+    Commitment sumCommitments(Commitment[] commitments) {
+        Commitment sum = null;
+        try {
+            sum = commitmentScheme.sumCommitments(commitments);
+        } catch (SecretSharingException e) {
+            logger.error("Failed to combine commitments", e);
+        }
+        return commitmentScheme.extractCommitment(shareholderId, sum);
+    }
+
+    /**
+     * Extracts f + 1 polynomials from each polynomial creation. Polynomials are processed in parallel because
+     * combining the commitments requires (f + 1)^2 exponentiations per polynomial.
+     */
+    private VerifiableShare[][] computeResultUsingVandermondeMatrix(BigInteger[][] points, Commitment[][] commitments) {
+        VandermondeMatrix vandermondeMatrix = distributedPolynomial.getVandermondeMatrix();
+        VerifiableShare[][] result = new VerifiableShare[points.length][];
+        computeInParallel(points.length, j -> result[j] = computeResultUsingVandermondeMatrix(vandermondeMatrix,
+                points[j], commitments[j]));
+        return result;
+    }
+
+    private VerifiableShare[] computeResultUsingVandermondeMatrix(VandermondeMatrix vandermondeMatrix,
+                                                                  BigInteger[] points, Commitment[] commitments) {
         logger.debug("Using vandermonde matrix for polynomial creation {}", creationContext.getId());
-        BigInteger[][] vandermondeMatrix = distributedPolynomial.getVandermondeMatrix();
-        int rows = vandermondeMatrix.length;
-        int columns = vandermondeMatrix[0].length;
-        VerifiableShare[] result = new VerifiableShare[vandermondeMatrix.length];
-        Commitment resultCommitment;
-        BigInteger[] linearCommitments;
-
-        for (int r = 0; r < rows; r++) {
-            BigInteger temp = BigInteger.ZERO;
-            linearCommitments = new BigInteger[faultsThreshold + 1];
-            Arrays.fill(linearCommitments, BigInteger.ONE);
-            for (int c = 0; c < columns; c++) {
-                temp = temp.add(vandermondeMatrix[r][c].multiply(points[c])).mod(field);
-                if (combineCommitments) {
-                    BigInteger x = vandermondeMatrix[r][c];
-                    BigInteger[] tempC = ((LinearCommitments) commitments[c]).getCommitments();
-                    for (int i = 0; i < tempC.length; i++) {
-                        linearCommitments[i] = linearCommitments[i].multiply(tempC[i].modPow(x, p)).mod(p);
-                    }
-                }
+        BigInteger[] extractedPoints = vandermondeMatrix.multiply(points);
+        Commitment[] resultCommitments = commitments;
+        if (creationContext.combineCommitments()) {
+            BigInteger[][] commitmentValues = new BigInteger[commitments.length][];
+            for (int c = 0; c < commitments.length; c++) {
+                commitmentValues[c] = ((LinearCommitments) commitments[c]).getCommitments();
             }
-            if (combineCommitments) {
-                resultCommitment = new LinearCommitments(linearCommitments);
-            } else {
-                resultCommitment = commitments[r];
+            BigInteger[][] linearCommitments = vandermondeMatrix.combineCommitments(commitmentValues, p);
+            resultCommitments = new Commitment[linearCommitments.length];
+            for (int r = 0; r < linearCommitments.length; r++) {
+                resultCommitments[r] = new LinearCommitments(linearCommitments[r]);
             }
-            result[r] = new VerifiableShare(new Share(shareholderId, temp), resultCommitment, null);
         }
-
+        VerifiableShare[] result = new VerifiableShare[extractedPoints.length];
+        for (int r = 0; r < extractedPoints.length; r++) {
+            result[r] = new VerifiableShare(new Share(shareholderId, extractedPoints[r]), resultCommitments[r], null);
+        }
         return result;
     }
 
     private byte[] serialize(PolynomialMessage message) {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutput out = new ObjectOutputStream(bos)) {
-            out.writeUTF(confidentialityScheme.getConfidentialSchemeId());
-            if (message instanceof ProposalMessage)
-                confidentialityScheme.serializeProposalMessage((ProposalMessage) message, out);
-            else if (message instanceof MissingProposalsMessage)
-                confidentialityScheme.serializeMissingProposalMessage((MissingProposalsMessage)message, out);
-            else
-                message.writeExternal(out);
-            out.flush();
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+            int id = message.getId();
+            bos.write(new byte[]{(byte) (id >>> 24), (byte) (id >>> 16), (byte) (id >>> 8), (byte) id});
+            try (ObjectOutput out = new ObjectOutputStream(bos)) {
+                out.writeUTF(confidentialityScheme.getConfidentialSchemeId());
+                if (message instanceof ProposalMessage)
+                    confidentialityScheme.serializeProposalMessage((ProposalMessage) message, out);
+                else if (message instanceof MissingProposalsMessage)
+                    confidentialityScheme.serializeMissingProposalMessage((MissingProposalsMessage)message, out);
+                else
+                    message.writeExternal(out);
+                out.flush();
+            }
             bos.flush();
             return bos.toByteArray();
         } catch (IOException e) {
@@ -11,11 +11,7 @@ import vss.secretsharing.VerifiableShare;
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author robin
@@ -38,32 +34,22 @@ public class RandomKeyPolynomialCreator extends PolynomialCreator {
 	@Override
 	ProposalMessage computeProposalMessage() {
 		BigInteger field = confidentialityScheme.getCurrentEllipticCurveField();
-		BigInteger privateKey = getRandomNumber(field);
 
+		// one proposal per polynomial context, each contributing to a different random key
 		Proposal[] proposals = new Proposal[creationContext.getContexts().length];
-		CountDownLatch latch = new CountDownLatch(proposals.length);
-		for (int i = 0; i < creationContext.getContexts().length; i++) {
-			int finalI = i;
-			distributedPolynomial.submitJob(() -> {
-				PolynomialContext context = creationContext.getContexts()[finalI];
-				//generating polynomial
-				Polynomial polynomial = new Polynomial(field, context.getF(), privateKey, rndGenerator);
+		computeInParallel(proposals.length, i -> {
+			PolynomialContext context = creationContext.getContexts()[i];
+			BigInteger privateKey = getRandomNumber(field);
+			//generating polynomial
+			Polynomial polynomial = new Polynomial(field, context.getF(), privateKey, rndGenerator);
 
-				//generating commitments
-				Commitment commitment = confidentialityScheme.generateEllipticCurveCommitment(polynomial);
+			//generating commitments
+			Commitment commitment = confidentialityScheme.generateEllipticCurveCommitment(polynomial);
 
-				//generating shares
-				Map<Integer, byte[]> points = computeShares(polynomial, context.getMembers());
-				proposals[finalI] = new Proposal(points, commitment);
-				latch.countDown();
-			});
-		}
-
-		try {
-			latch.await();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+			//generating shares
+			Map<Integer, byte[]> points = computeShares(polynomial, context.getMembers());
+			proposals[i] = new Proposal(points, commitment);
+		});
 
 		return new ProposalMessage(
 				creationContext.getId(),
@@ -84,116 +70,41 @@ public class RandomKeyPolynomialCreator extends PolynomialCreator {
 			return false;
 		}
 		BigInteger[] decryptedProposalPoints = new BigInteger[proposals.length];
-		AtomicBoolean isValid = new AtomicBoolean(true);
-		CountDownLatch latch = new CountDownLatch(proposals.length);
-
-		for (int i = 0; i < proposals.length; i++) {
+		boolean isValid = validateInParallel(proposals.length, i -> {
 			Proposal proposal = proposals[i];
-			int finalI = i;
-			distributedPolynomial.submitJob(() -> {
-				if (!isValid.get()) {
-					latch.countDown();
-					return;
-				}
-				byte[] encryptedPoint = proposal.getPoints().get(processId);
-				byte[] decryptedPoint = confidentialityScheme.decryptData(processId, encryptedPoint);
-				if (decryptedPoint == null) {
-					logger.error("Failed to decrypt my point from {}", proposalMessage.getSender());
-					isValid.set(false);
-				} else {
-					BigInteger point = new BigInteger(decryptedPoint);
-					Share share = new Share(shareholderId, point);
-					decryptedProposalPoints[finalI] = point;
-					Commitment commitment = proposal.getCommitments();
-					if (confidentialityScheme.checkEllipticCurveCommitment(share, commitment)) {
-						validProposals.add(proposalSender);
-						logger.debug("Proposal from {} is valid", proposalSender);
-					} else {
-						invalidProposals.add(proposalSender);
-						logger.warn("Proposal from {} is invalid", proposalSender);
-						isValid.set(false);
-					}
-				}
-				latch.countDown();
-			});
-		}
-		try {
-			latch.await();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-		if (!isValid.get())
+			byte[] encryptedPoint = proposal.getPoints().get(processId);
+			byte[] decryptedPoint = confidentialityScheme.decryptData(processId, encryptedPoint);
+			if (decryptedPoint == null) {
+				logger.error("Failed to decrypt my point from {}", proposalMessage.getSender());
+				return false;
+			}
+			BigInteger point = new BigInteger(decryptedPoint);
+			Share share = new Share(shareholderId, point);
+			decryptedProposalPoints[i] = point;
+			Commitment commitment = proposal.getCommitments();
+			if (confidentialityScheme.checkEllipticCurveCommitment(share, commitment)) {
+				validProposals.add(proposalSender);
+				logger.debug("Proposal from {} is valid", proposalSender);
+				return true;
+			}
+			invalidProposals.add(proposalSender);
+			logger.warn("Proposal from {} is invalid", proposalSender);
+			return false;
+		});
+		if (!isValid)
 			return false;
 		decryptedPoints.put(proposalSender, decryptedProposalPoints);
 		return true;
 	}
 
 	@Override
-	public void deliverResult(int consensusId, ProposalSetMessage proposalSet) {
-		BigInteger[][] finalPoint = null;
-		Commitment[][] allCommitments = null;
-		int i = 0;
-		List<ProposalMessage> invalidProposals = new LinkedList<>();
-		for (int member : proposalSet.getReceivedNodes()) {
-			ProposalMessage proposal = proposals.get(member);
-			if (this.invalidProposals.contains(member))
-				invalidProposals.add(proposal);
-		}
-
-		if (!invalidProposals.isEmpty()) {
-			BigInteger[][] invalidPoints = new BigInteger[invalidProposals.size()][];
-			ProposalMessage[] invalidProposalsArray = new ProposalMessage[invalidProposals.size()];
-			int index = 0;
-			for (ProposalMessage invalidProposal : invalidProposals) {
-				invalidProposalsArray[index] = invalidProposal;
-				invalidPoints[index] = decryptedPoints.get(invalidProposal.getSender());
-				index++;
-
-			}
-			creationListener.onPolynomialCreationFailure(creationContext, consensusId, invalidProposalsArray, invalidPoints);
-			return;
-		}
-
-		for (int member : proposalSet.getReceivedNodes()) {
-			BigInteger[] points = decryptedPoints.get(member);
-			if (points == null) { //if this replica did not receive some proposals
-				logger.warn("I do not have a proposal from {}. This should not happen in deliverResult()", member);
-				creationListener.onPolynomialCreationFailure(creationContext, consensusId, null, null);
-				return;
-			}
-			if (finalPoint == null) {
-				int nPolynomials = points.length;
-
-				finalPoint = new BigInteger[nPolynomials][1];
-				for (int j = 0; j < finalPoint.length; j++) {
-					finalPoint[j][0] = BigInteger.ZERO;
-				}
-				allCommitments = new Commitment[nPolynomials][faultsThreshold + 1];
-			}
-			for (int j = 0; j < finalPoint.length; j++) {
-
-				finalPoint[j][0] = finalPoint[j][0].add(points[j]);
-				allCommitments[j][i] = proposals.get(member).getProposals()[j].getCommitments();
-			}
-			i++;
-		}
-		if (finalPoint == null) {
-			logger.error("Something went wrong while computing final point");
-			return;
-		}
-		VerifiableShare[][] result;
-		result = new VerifiableShare[finalPoint.length][1];
-		for (int j = 0; j < finalPoint.length; j++) {
-			Share share = new Share(shareholderId, finalPoint[j][0]);
-			Commitment commitment = null;
-			try {
-				commitment = confidentialityScheme.sumEllipticCurveCommitments(allCommitments[j]);
-			} catch (SecretSharingException e) {
-				logger.error("Failed to combine commitments", e);
-			}
-			result[j][0] =  new VerifiableShare(share, commitment, null);
+	Commitment sumCommitments(Commitment[] commitments) {
+		try {
+			return confidentialityScheme.sumEllipticCurveCommitments(commitments);
+		} catch (SecretSharingException e) {
+			logger.error("Failed to combine commitments", e);
+			return null;
 		}
-		creationListener.onPolynomialCreationSuccess(creationContext, consensusId, result);
 	}
 
 	protected BigInteger getRandomNumber(BigInteger field) {
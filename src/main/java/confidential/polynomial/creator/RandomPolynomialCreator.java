@@ -10,8 +10,6 @@ import vss.secretsharing.Share;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author robin
@@ -36,30 +34,18 @@ public class RandomPolynomialCreator extends PolynomialCreator {
 		BigInteger q = getRandomNumber();
 
 		Proposal[] proposals = new Proposal[creationContext.getContexts().length];
-		CountDownLatch latch = new CountDownLatch(proposals.length);
+		computeInParallel(proposals.length, i -> {
+			PolynomialContext context = creationContext.getContexts()[i];
+			//generating polynomial
+			Polynomial polynomial = new Polynomial(field, context.getF(), q, rndGenerator);
 
-		for (int i = 0; i < creationContext.getContexts().length; i++) {
-			int finalI = i;
-			distributedPolynomial.submitJob(() -> {
-				PolynomialContext context = creationContext.getContexts()[finalI];
-				//generating polynomial
-				Polynomial polynomial = new Polynomial(field, context.getF(), q, rndGenerator);
+			//generating commitments
+			Commitment commitments = commitmentScheme.generateCommitments(polynomial);
 
-				//generating commitments
-				Commitment commitments = commitmentScheme.generateCommitments(polynomial);
-
-				//generating shares
-				Map<Integer, byte[]> points = computeShares(polynomial, context.getMembers());
-				proposals[finalI] = new Proposal(points, commitments);
-				latch.countDown();
-			});
-		}
-
-		try {
-			latch.await();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+			//generating shares
+			Map<Integer, byte[]> points = computeShares(polynomial, context.getMembers());
+			proposals[i] = new Proposal(points, commitments);
+		});
 
 		return new ProposalMessage(
 				creationContext.getId(),
@@ -79,45 +65,28 @@ public class RandomPolynomialCreator extends PolynomialCreator {
 			return false;
 		}
 		BigInteger[] decryptedProposalPoints = new BigInteger[proposals.length];
-		AtomicBoolean isValid = new AtomicBoolean(true);
-		CountDownLatch latch = new CountDownLatch(proposals.length);
-
-		for (int i = 0; i < proposals.length; i++) {
+		boolean isValid = validateInParallel(proposals.length, i -> {
 			Proposal proposal = proposals[i];
-			int finalI = i;
-			distributedPolynomial.submitJob(() -> {
-				if (!isValid.get()) {
-					latch.countDown();
-					return;
-				}
-				byte[] encryptedPoint = proposal.getPoints().get(processId);
-				byte[] decryptedPoint = confidentialityScheme.decryptData(processId, encryptedPoint);
-				if (decryptedPoint == null) {
-					logger.error("Failed to decrypt my point from {}", proposalMessage.getSender());
-					isValid.set(false);
-				} else {
-					BigInteger point = new BigInteger(decryptedPoint);
-					Share share = new Share(shareholderId, point);
-					decryptedProposalPoints[finalI] = point;
-					Commitment commitment = proposal.getCommitments();
-					if (commitmentScheme.checkValidityWithoutPreComputation(share, commitment)) {
-						validProposals.add(proposalSender);
-						logger.debug("Proposal from {} is valid", proposalSender);
-					} else {
-						invalidProposals.add(proposalSender);
-						logger.warn("Proposal from {} is invalid", proposalSender);
-						isValid.set(false);
-					}
-				}
-				latch.countDown();
-			});
-		}
-		try {
-			latch.await();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-		if (!isValid.get())
+			byte[] encryptedPoint = proposal.getPoints().get(processId);
+			byte[] decryptedPoint = confidentialityScheme.decryptData(processId, encryptedPoint);
+			if (decryptedPoint == null) {
+				logger.error("Failed to decrypt my point from {}", proposalMessage.getSender());
+				return false;
+			}
+			BigInteger point = new BigInteger(decryptedPoint);
+			Share share = new Share(shareholderId, point);
+			decryptedProposalPoints[i] = point;
+			Commitment commitment = proposal.getCommitments();
+			if (commitmentScheme.checkValidityWithoutPreComputation(share, commitment)) {
+				validProposals.add(proposalSender);
+				logger.debug("Proposal from {} is valid", proposalSender);
+				return true;
+			}
+			invalidProposals.add(proposalSender);
+			logger.warn("Proposal from {} is invalid", proposalSender);
+			return false;
+		});
+		if (!isValid)
 			return false;
 		decryptedPoints.put(proposalSender, decryptedProposalPoints);
 		return true;
@@ -10,7 +10,6 @@ import vss.secretsharing.Share;
 import java.math.BigInteger;
 import java.security.SecureRandom;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
 
 public class ResharingPolynomialCreator extends PolynomialCreator {
     private final ViewStatus viewStatus;
@@ -43,24 +42,13 @@ public class ResharingPolynomialCreator extends PolynomialCreator {
         BigInteger q = getRandomNumber();
         Proposal[] proposals = new Proposal[2];
 
-        CountDownLatch latch = new CountDownLatch(2);
-        for (int i = 0; i < proposals.length; i++) {
+        computeInParallel(proposals.length, i -> {
             PolynomialContext context = creationContext.getContexts()[i];
-            int finalI = i;
-            distributedPolynomial.submitJob(() -> {
-                Polynomial polynomial = new Polynomial(field, context.getF(), q, rndGenerator);
-                Commitment commitment = commitmentScheme.generateCommitments(polynomial, BigInteger.ZERO);
-                Map<Integer, byte[]> points = computeShares(polynomial, context.getMembers());
-                proposals[finalI] = new Proposal(points, commitment);
-                latch.countDown();
-            });
-        }
-
-        try {
-            latch.await();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+            Polynomial polynomial = new Polynomial(field, context.getF(), q, rndGenerator);
+            Commitment commitment = commitmentScheme.generateCommitments(polynomial, BigInteger.ZERO);
+            Map<Integer, byte[]> points = computeShares(polynomial, context.getMembers());
+            proposals[i] = new Proposal(points, commitment);
+        });
 
         return new ProposalMessage(
                 creationContext.getId(),
@@ -71,83 +59,45 @@ public class ResharingPolynomialCreator extends PolynomialCreator {
 
     @Override
     synchronized boolean validateProposal(ProposalMessage proposalMessage) {
-        Proposal oldViewProposal = proposalMessage.getProposals()[0];
-        Proposal newViewProposal = proposalMessage.getProposals()[1];
+        Proposal[] proposals = proposalMessage.getProposals();
         int proposalSender = proposalMessage.getSender();
 
-        BigInteger[] decryptedProposalPoints = null;
-        Share oldViewShare, newViewShare;
-        boolean[] isValid;
-
+        // proposals with a point for me: 0 - old view; 1 - new view
+        int[] myProposals;
         switch (viewStatus) {
             case IN_OLD:
-                oldViewShare = getDecryptedShare(proposalSender, oldViewProposal);
-                if (oldViewShare == null)
-                    return false;
-                decryptedProposalPoints = new BigInteger[1];
-                decryptedProposalPoints[0] = oldViewShare.getShare();
-                isValid = new boolean[2];
-                isValid[0] = commitmentScheme.checkValidityWithoutPreComputation(oldViewShare,
-                        oldViewProposal.getCommitments());
-                isValid[1] = doesEncodeSameSecret(oldViewProposal, newViewProposal);
-
-                if (isValid[0] && isValid[1]) {
-                    validProposals.add(proposalSender);
-                    logger.debug("Proposal from {} is valid for creation {}", proposalSender, proposalMessage.getId());
-                } else {
-                    invalidProposals.add(proposalSender);
-                    logger.debug("Proposal from {} is invalid for creation {}", proposalSender, proposalMessage.getId());
-                    return false;
-                }
+                myProposals = new int[] {0};
                 break;
             case IN_NEW:
-                newViewShare = getDecryptedShare(proposalSender, newViewProposal);
-                if (newViewShare == null) {
-                    return false;
-                }
-                decryptedProposalPoints = new BigInteger[1];
-                decryptedProposalPoints[0] = newViewShare.getShare();
-                isValid = new boolean[2];
-                isValid[0] = commitmentScheme.checkValidityWithoutPreComputation(newViewShare,
-                        newViewProposal.getCommitments());
-                isValid[1] = doesEncodeSameSecret(oldViewProposal, newViewProposal);
-
-                if (isValid[0] && isValid[1]) {
-                    validProposals.add(proposalSender);
-                    logger.debug("Proposal from {} is valid for creation {}", proposalSender, proposalMessage.getId());
-                } else {
-                    invalidProposals.add(proposalSender);
-                    logger.debug("Proposal from {} is invalid for creation {}", proposalSender, proposalMessage.getId());
-                    return false;
-                }
+                myProposals = new int[] {1};
                 break;
-            case IN_BOTH:
-                oldViewShare = getDecryptedShare(proposalSender, oldViewProposal);
-                if (oldViewShare == null)
-                    return false;
-                newViewShare = getDecryptedShare(proposalSender, newViewProposal);
-                if (newViewShare == null)
-                    return false;
-                decryptedProposalPoints = new BigInteger[2];
-                decryptedProposalPoints[0] = oldViewShare.getShare();
-                decryptedProposalPoints[1] = newViewShare.getShare();
-                isValid = new boolean[3];
-                isValid[0] = commitmentScheme.checkValidityWithoutPreComputation(oldViewShare,
-                        oldViewProposal.getCommitments());
-                isValid[1] = commitmentScheme.checkValidityWithoutPreComputation(newViewShare,
-                        newViewProposal.getCommitments());
-                isValid[2] = doesEncodeSameSecret(oldViewProposal, newViewProposal);
-
-                if (isValid[0] && isValid[1] && isValid[2]) {
-                    validProposals.add(proposalSender);
-                    logger.debug("Proposal from {} is valid for creation {}", proposalSender, proposalMessage.getId());
-                } else {
-                    invalidProposals.add(proposalSender);
-                    logger.debug("Proposal from {} is invalid for creation {}", proposalSender, proposalMessage.getId());
-                    return false;
-                }
+            default:
+                myProposals = new int[] {0, 1};
                 break;
         }
+
+        BigInteger[] decryptedProposalPoints = new BigInteger[myProposals.length];
+        Share[] shares = new Share[myProposals.length];
+        for (int i = 0; i < myProposals.length; i++) {
+            shares[i] = getDecryptedShare(proposalSender, proposals[myProposals[i]]);
+            if (shares[i] == null)
+                return false;
+            decryptedProposalPoints[i] = shares[i].getShare();
+        }
+
+        // the last check verifies that both proposals encode the same secret
+        boolean isValid = validateInParallel(shares.length + 1, i -> i == shares.length
+                ? doesEncodeSameSecret(proposals[0], proposals[1])
+                : commitmentScheme.checkValidityWithoutPreComputation(shares[i],
+                        proposals[myProposals[i]].getCommitments()));
+
+        if (!isValid) {
+            invalidProposals.add(proposalSender);
+            logger.debug("Proposal from {} is invalid for creation {}", proposalSender, proposalMessage.getId());
+            return false;
+        }
+        validProposals.add(proposalSender);
+        logger.debug("Proposal from {} is valid for creation {}", proposalSender, proposalMessage.getId());
         decryptedPoints.put(proposalSender, decryptedProposalPoints);
         return true;
     }
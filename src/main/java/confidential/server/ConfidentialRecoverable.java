@@ -10,11 +10,14 @@ import bftsmart.tom.core.messages.TOMMessage;
 import bftsmart.tom.server.IResponseSender;
 import bftsmart.tom.server.ProposeRequestVerifier;
 import bftsmart.tom.server.Recoverable;
+import bftsmart.tom.server.RequestVerifier;
 import bftsmart.tom.server.SingleExecutable;
 import bftsmart.tom.server.defaultservices.CommandsInfo;
 import bftsmart.tom.server.defaultservices.DefaultApplicationState;
 import bftsmart.tom.util.ServiceContent;
 import bftsmart.tom.util.TOMUtil;
+import confidential.BufferObjectInput;
+import confidential.BufferObjectOutput;
 import confidential.ConfidentialMessage;
 import confidential.Configuration;
 import confidential.MessageType;
@@ -25,10 +28,12 @@ import confidential.facade.server.ConfidentialSingleExecutable;
 import confidential.interServersCommunication.InterServersCommunication;
 import confidential.polynomial.DistributedPolynomial;
 import confidential.polynomial.DistributedPolynomialManager;
+import confidential.polynomial.PolynomialMessage;
 import confidential.polynomial.ProposalSetMessage;
 import confidential.statemanagement.ConfidentialSnapshot;
 import confidential.statemanagement.ConfidentialStateLog;
 import confidential.statemanagement.ConfidentialStateManager;
+import confidential.statemanagement.DiskConfidentialStateLog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import vss.commitment.Commitment;
@@ -36,12 +41,17 @@ import vss.commitment.CommitmentScheme;
 import vss.commitment.CommitmentUtils;
 import vss.commitment.constant.ConstantCommitment;
 import vss.facade.SecretSharingException;
+import vss.secretsharing.Share;
 import vss.secretsharing.VerifiableShare;
 
 import java.io.*;
 import java.math.BigInteger;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.ReentrantLock;
 
 public final class ConfidentialRecoverable implements SingleExecutable, Recoverable,
@@ -57,16 +67,19 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 	private ConfidentialStateManager stateManager;
 	private InterServersCommunication interServersCommunication;
 	private int checkpointPeriod;
-	private final List<byte[]> commands;
+	private final int fullSnapshotPeriod;
+	private final List<Request> commands;
 	private final List<MessageContext> msgContexts;
 	private final boolean useTLSEncryption;
 	private final ConfidentialSingleExecutable confidentialExecutor;
 	private DistributedPolynomial distributedPolynomial;
 	private boolean isLinearCommitmentScheme;
 	private final boolean isCombinePrivateAndCommonData;
-	// Not the best solution. Requests failed during consensus, will not be removed from this map
-	private final Map<Integer, Request> deserializedRequests;
+	private final VerifiedRequestCache deserializedRequests;
 	private final boolean verifyClientsRequests;
+	private final ExecutorService verificationExecutor;
+	private final ExecutorService checkpointExecutor;
+	private volatile Future<?> pendingCheckpoint;
 	private IResponseSender responseSender;
 
 	public ConfidentialRecoverable(int processId, ConfidentialSingleExecutable confidentialExecutor) {
@@ -76,9 +89,15 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 		this.commands = new ArrayList<>();
 		this.msgContexts = new ArrayList<>();
 		this.useTLSEncryption = Configuration.getInstance().useTLSEncryption();
-		this.deserializedRequests = new ConcurrentHashMap<>();
+		this.deserializedRequests = new VerifiedRequestCache(Configuration.getInstance().getVerifiedRequestsCacheSize(),
+				Configuration.getInstance().getVerifiedRequestsCacheTimeout());
 		this.verifyClientsRequests = Configuration.getInstance().isVerifyClientRequests();
+		this.verificationExecutor = verifyClientsRequests && Configuration.getInstance().isPreOrderingVerification()
+				? Executors.newFixedThreadPool(Configuration.getInstance().getShareProcessingThreads())
+				: null;
 		this.isCombinePrivateAndCommonData = Configuration.getInstance().isSendAllSharesTogether();
+		this.checkpointExecutor = Executors.newSingleThreadExecutor();
+		this.fullSnapshotPeriod = Configuration.getInstance().getFullSnapshotPeriod();
 	}
 
 	public void registerConfidentialityScheme(String id, ServerConfidentialityScheme serverConfidentialityScheme) {
@@ -136,11 +155,14 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 		logger.debug("Metadata: {}", metadata);
 		if (metadata == Metadata.POLYNOMIAL_PROPOSAL_SET) {
 			Request req = preprocessRequest(request.getCommonContent(), request.getReplicaSpecificContent(), request.getSender());
-			if (req == null || req.getType() != MessageType.APPLICATION) {
+			if (req == null || req.getType() != MessageType.APPLICATION
+					|| req.getPlainData().length < 1 + PolynomialMessage.ID_HEADER_LENGTH) {
 				logger.error("Unknown request type to verify");
 				return false;
 			}
-			byte[] m = Arrays.copyOfRange(req.getPlainData(), 1, req.getPlainData().length);
+			// skipping the message type and the polynomial creation id header
+			byte[] m = Arrays.copyOfRange(req.getPlainData(), 1 + PolynomialMessage.ID_HEADER_LENGTH,
+					req.getPlainData().length);
 			try (ByteArrayInputStream bis = new ByteArrayInputStream(m);
 				 ObjectInput in = new ObjectInputStream(bis)) {
 				ProposalSetMessage proposalSetMessage = new ProposalSetMessage();
@@ -154,20 +176,17 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 		} else if (metadata == Metadata.VERIFY) {
 			if (!verifyClientsRequests)
 				return true;
-			Request req = preprocessRequest(request.getCommonContent(), request.getReplicaSpecificContent(),
-					request.getSender());
-			if (req == null || req.getShares() == null) {
-				return false;
-			}
-			deserializedRequests.put(hashRequest(request.getSender(), request.getSession(), request.getSequence()), req);
-			for (VerifiableShare vs : req.getShares()) {
-				boolean isValid = commitmentScheme.checkValidityWithoutPreComputation(vs.getShare(), vs.getCommitments());
-				if (!isValid) {
-					logger.warn("Client {} sent me an invalid share", request.getSender());
-					return false;
-				}
+			byte[] digest = VerifiedRequestCache.digest(request.getCommonContent(),
+					request.getReplicaSpecificContent());
+			CompletableFuture<Request> verification = deserializedRequests.get(request.getSender(),
+					request.getSession(), request.getSequence(), digest);
+			if (verification == null) {
+				verification = CompletableFuture.completedFuture(verifyClientRequest(request.getCommonContent(),
+						request.getReplicaSpecificContent(), request.getSender()));
+				deserializedRequests.put(request.getSender(), request.getSession(), request.getSequence(), digest,
+						verification);
 			}
-			return true;
+			return verification.join() != null;
 		} else if (metadata == Metadata.DOES_NOT_VERIFY) {
 			return true;
 		} else {
@@ -176,11 +195,64 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 		}
 	}
 
-	private int hashRequest(int sender, int session, int sequence) {
-		int hash = sender;
-		hash = 31 * hash + session;
-		hash = 31 * hash + sequence;
-		return hash;
+	/**
+	 * Returns a request verifier to be used by BFT-SMaRt when client requests arrive. Client requests that must be
+	 * verified are submitted to the verification executor, so their shares are already decrypted and checked when
+	 * they are proposed.
+	 * @param applicationVerifier Request verifier of the application or null
+	 * @return Request verifier
+	 */
+	public RequestVerifier getPreOrderingVerifier(RequestVerifier applicationVerifier) {
+		return request -> {
+			if (applicationVerifier != null && !applicationVerifier.isValidRequest(request))
+				return false;
+			preVerifyRequest(request);
+			return true;
+		};
+	}
+
+	private void preVerifyRequest(TOMMessage request) {
+		if (verificationExecutor == null || commitmentScheme == null || request.getMetadata() == -1
+				|| Metadata.getMessageType(request.getMetadata()) != Metadata.VERIFY)
+			return;
+		byte[] commonContent = request.getCommonContent();
+		byte[] replicaSpecificContent = request.getReplicaSpecificContent();
+		deserializedRequests.computeIfAbsent(request.getSender(), request.getSession(), request.getSequence(),
+				VerifiedRequestCache.digest(commonContent, replicaSpecificContent),
+				() -> CompletableFuture.supplyAsync(() -> verifyClientRequest(commonContent, replicaSpecificContent,
+						request.getSender()), verificationExecutor));
+	}
+
+	/**
+	 * Decrypts the shares of a client request and verifies them
+	 * @param commonContent Content of the request sent to all replicas
+	 * @param replicaSpecificContent Content of the request sent to this replica
+	 * @param sender Client
+	 * @return Preprocessed request or null if the request is invalid
+	 */
+	private Request verifyClientRequest(byte[] commonContent, byte[] replicaSpecificContent, int sender) {
+		Request req = preprocessRequest(commonContent, replicaSpecificContent, sender);
+		if (req == null || req.getShares() == null) {
+			return null;
+		}
+		VerifiableShare[] verifiableShares = req.getShares();
+		Share[] shares = new Share[verifiableShares.length];
+		Commitment[] commitments = new Commitment[verifiableShares.length];
+		for (int i = 0; i < verifiableShares.length; i++) {
+			shares[i] = verifiableShares[i].getShare();
+			commitments[i] = verifiableShares[i].getCommitments();
+		}
+		for (boolean isValid : commitmentScheme.checkValidityBatch(shares, commitments)) {
+			if (!isValid) {
+				logger.warn("Client {} sent me an invalid share", sender);
+				return null;
+			}
+		}
+		return req;
+	}
+
+	public VerifiedRequestCache getVerifiedRequestCache() {
+		return deserializedRequests;
 	}
 
 	private ConfidentialStateLog getLog() {
@@ -195,8 +267,18 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 		ConfidentialSnapshot snapshot = confidentialExecutor.getConfidentialSnapshot();
 		byte[] state = snapshot.serialize();
 		if (replicaContext.getStaticConfiguration().logToDisk()) {
-			logger.error("Log to disk not implemented");
-			return null;
+			logger.info("Logging to disk");
+			DiskConfidentialStateLog diskLog = new DiskConfidentialStateLog(processId, checkpointPeriod, state,
+					TOMUtil.computeHash(state), replicaContext.getStaticConfiguration().isToWriteSyncLog(),
+					replicaContext.getStaticConfiguration().isToWriteSyncCkp());
+			log = diskLog;
+			DefaultApplicationState storedState = diskLog.loadDurableState();
+			if (storedState.getLastCID() > -1) {
+				logger.info("Replaying durable state up to CID {}", storedState.getLastCID());
+				setState(storedState);
+				stateManager.setLastCID(storedState.getLastCID());
+			}
+			return diskLog;
 		}
 		logger.info("Logging to memory");
 		return new ConfidentialStateLog(processId, checkpointPeriod, state, TOMUtil.computeHash(state));
@@ -204,6 +286,8 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 
 	@Override
 	public ApplicationState getState(int cid, boolean sendState) {
+		// the state sent is the same whether or not the checkpoint thread already saved the last checkpoint
+		waitForPendingCheckpoint();
 		logLock.lock();
 		logger.debug("Getting state until CID {}", cid);
 		ApplicationState state = (cid > -1 ? getLog().getApplicationState(cid, sendState)
@@ -236,6 +320,12 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 				logger.info("Installing snapshot up to CID {}", lastCheckpointCID);
 				ConfidentialSnapshot snapshot = ConfidentialSnapshot.deserialize(state.getSerializedState());
 				confidentialExecutor.installConfidentialSnapshot(snapshot);
+				if (snapshot.getDeltas() != null) {
+					logger.info("Installing {} snapshot deltas", snapshot.getDeltas().length);
+					for (ConfidentialSnapshot delta : snapshot.getDeltas()) {
+						confidentialExecutor.installConfidentialSnapshotDelta(delta);
+					}
+				}
 			}
 
 			for (int cid = lastCheckpointCID + 1; cid <= lastCID; cid++) {
@@ -299,21 +389,9 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 	@Override
 	public void noOp(int CID, byte[][] operations, byte[][] replicaSpecificContents, MessageContext[] msgCtx) {
 		for (int i = 0; i < operations.length; i++) {
-			try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-				 ObjectOutput out = new ObjectOutputStream(bos)) {
-				logger.info("NoOp in cid {} from {}", CID, msgCtx[i].getSender());
-				out.write((byte) MessageType.RECONFIGURATION.ordinal());//This is wrong because after reconfiguration, old view clients' requests are delivered here
-				byte[] operation = operations[i];
-				out.writeInt(operation == null ? -1 : operation.length);
-				out.write(operation);
-				out.writeInt(-1);
-				out.flush();
-				bos.flush();
-
-				logRequest(bos.toByteArray(), msgCtx[i]);
-			} catch (IOException e) {
-				logger.error("Failed to log noOp operation");
-			}
+			logger.info("NoOp in cid {} from {}", CID, msgCtx[i].getSender());
+			//This is wrong because after reconfiguration, old view clients' requests are delivered here
+			logRequest(new Request(MessageType.RECONFIGURATION, operations[i], (VerifiableShare[]) null), msgCtx[i]);
 		}
 	}
 
@@ -321,8 +399,10 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 	public ServiceContent executeOrdered(byte[] command, byte[] privateData, MessageContext msgCtx) {
 		Request request;
 		if (verifyClientsRequests) {
-			int hash = hashRequest(msgCtx.getSender(), msgCtx.getSession(), msgCtx.getSequence());
-			request = deserializedRequests.remove(hash);
+			// the cached request is only used if it was computed from the ordered request
+			CompletableFuture<Request> verification = deserializedRequests.remove(msgCtx.getSender(),
+					msgCtx.getSession(), msgCtx.getSequence(), VerifiedRequestCache.digest(command, privateData));
+			request = verification == null ? null : verification.join();
 			if (request == null) {
 				request = preprocessRequest(command, privateData, msgCtx.getSender());
 			}
@@ -331,7 +411,6 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 		}
 		if (request == null)
 			return null;
-		byte[] preprocessedCommand = request.serialize();
 		ServiceContent response;
 		if (request.getType() == MessageType.APPLICATION) {
 			logger.debug("Received application ordered message of {} in CID {}. Regency: {}", msgCtx.getSender(),
@@ -348,7 +427,7 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 			logger.info("Received reconfiguration message in executeOrdered");
 			response = null;
 		}
-		logRequest(preprocessedCommand, msgCtx);
+		logRequest(request, msgCtx);
 
 		return response;
 	}
@@ -415,8 +494,7 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 
 	private byte[] serializeReplicaSpecificContent(int nConfidentialData, byte[][] serializedShares,
 												   Commitment[] commitments) {
-		try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-			 ObjectOutput out = new ObjectOutputStream(bos)) {
+		try (BufferObjectOutput out = BufferObjectOutput.acquire()) {
 			out.writeInt(nConfidentialData);
 			if (nConfidentialData != -1) {
 				for (int i = 0; i < nConfidentialData; i++) {
@@ -428,9 +506,7 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 					CommitmentUtils.getInstance().writeCommitment(commitments[i], out);
 				}
 			}
-			out.flush();
-			bos.flush();
-			return bos.toByteArray();
+			return out.toByteArray();
 		} catch (IOException e) {
 			logger.error("Failed to serialize replica specific content", e);
 			return null;
@@ -439,8 +515,7 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 
 	private byte[] serializeCommonContent(byte[] plainData, int nConfidentialData, byte[][] sharedData,
 										  BigInteger[] shareholders, Commitment[] commitments) {
-		try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-			 ObjectOutput out = new ObjectOutputStream(bos)) {
+		try (BufferObjectOutput out = BufferObjectOutput.acquire()) {
 			out.writeInt(plainData == null ? -1 : plainData.length);
 			if (plainData != null)
 				out.write(plainData);
@@ -457,12 +532,7 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 					out.writeInt(commitmentConsistHash);// for easy response comparison on client-side
 				}
 			}
-			out.flush();
-			bos.flush();
-			return bos.toByteArray();
-		} catch (IOException e) {
-			logger.error("Failed to serialize common content", e);
-			return null;
+			return out.toByteArray();
 		}
 	}
 
@@ -479,8 +549,7 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 	}
 
 	private Request preprocessRequest(byte[] command, byte[] privateData, int sender) {
-		try (ByteArrayInputStream bis = new ByteArrayInputStream(command);
-			 ObjectInput in = new ObjectInputStream(bis)) {
+		try (ObjectInput in = BufferObjectInput.open(command)) {
 			MessageType type = MessageType.getMessageType(in.read());
 			Request result = null;
 			int len;
@@ -538,8 +607,7 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 
 		BigInteger shareholder = confidentialityScheme.getMyShareholderId();
 
-		try (ByteArrayInputStream privateBis = new ByteArrayInputStream(privateData);
-			 ObjectInput privateIn = new ObjectInputStream(privateBis)) {
+		try (ObjectInput privateIn = BufferObjectInput.open(privateData)) {
 			EncryptedPublishedShares publishedShares;
 			for (int i = 0; i < size; i++) {
 				int l = commonDataStream.readInt();
@@ -577,17 +645,49 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 		return shares;
 	}
 
-	private void saveState(byte[] snapshot, int lastCID) {
-		logLock.lock();
+	/**
+	 * Serializes and hashes the snapshot in the checkpoint thread. The batches up to lastCID are only removed from
+	 * the log after the checkpoint is ready, so the log is always complete while new batches are delivered.
+	 */
+	private void saveState(ConfidentialSnapshot snapshot, int lastCID) {
 		logger.debug("Saving state of CID {}", lastCID);
+		byte[] serializedSnapshot = snapshot.serialize();
+		byte[] snapshotHash = TOMUtil.computeHash(serializedSnapshot);
+		log.prepareCheckpoint(serializedSnapshot, snapshotHash, lastCID);
 
-		log.newCheckpoint(snapshot, TOMUtil.computeHash(snapshot), lastCID);
-
+		logLock.lock();
+		if (lastCID > log.getLastCheckpointCID())
+			log.newCheckpoint(serializedSnapshot, snapshotHash, lastCID);
+		else
+			logger.info("Ignoring checkpoint of CID {} because a more recent state was installed", lastCID);
 		logLock.unlock();
 		logger.debug("Finished saving state of CID {}", lastCID);
 	}
 
-	private void saveCommands(byte[][] commands, MessageContext[] msgCtx) {
+	/**
+	 * Saves a checkpoint containing only the changes since the previous checkpoint. The hash of the resulting state
+	 * is chained with the hash of the previous checkpoint, which was saved by the previous task of the checkpoint
+	 * thread.
+	 */
+	private void saveDeltaState(ConfidentialSnapshot delta, int lastCID) {
+		logger.debug("Saving state delta of CID {}", lastCID);
+		byte[] serializedDelta = delta.serialize();
+		logLock.lock();
+		byte[] previousHash = log.getStateHash();
+		logLock.unlock();
+		byte[] stateHash = ConfidentialSnapshot.chainHash(previousHash, serializedDelta);
+		log.prepareDeltaCheckpoint(serializedDelta, stateHash, lastCID);
+
+		logLock.lock();
+		if (lastCID > log.getLastCheckpointCID())
+			log.newDeltaCheckpoint(serializedDelta, stateHash, lastCID);
+		else
+			logger.info("Ignoring state delta of CID {} because a more recent state was installed", lastCID);
+		logLock.unlock();
+		logger.debug("Finished saving state delta of CID {}", lastCID);
+	}
+
+	private void saveCommands(Request[] commands, MessageContext[] msgCtx) {
 		if (commands.length != msgCtx.length) {
 			logger.debug("----SIZE OF COMMANDS AND MESSAGE CONTEXTS IS DIFFERENT----");
 			logger.debug("----COMMANDS: {}, CONTEXTS: {} ----", commands.length, msgCtx.length);
@@ -599,12 +699,12 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 		int batchStart = 0;
 		for (int i = 0; i <= msgCtx.length; i++) {
 			if (i == msgCtx.length) { // the batch command contains only one command or it is the last position of the array
-				byte[][] batch = Arrays.copyOfRange(commands, batchStart, i);
+				Request[] batch = Arrays.copyOfRange(commands, batchStart, i);
 				MessageContext[] batchMsgCtx = Arrays.copyOfRange(msgCtx, batchStart, i);
 				log.addMessageBatch(batch, batchMsgCtx, cid);
 			} else {
 				if (msgCtx[i].getConsensusId() > cid) { // saves commands when the CID changes or when it is the last batch
-					byte[][] batch = Arrays.copyOfRange(commands, batchStart, i);
+					Request[] batch = Arrays.copyOfRange(commands, batchStart, i);
 					MessageContext[] batchMsgCtx = Arrays.copyOfRange(msgCtx, batchStart, i);
 					log.addMessageBatch(batch, batchMsgCtx, cid);
 					cid = msgCtx[i].getConsensusId();
@@ -616,9 +716,9 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 		logLock.unlock();
 	}
 
-	private void logRequest(byte[] command, MessageContext msgCtx) {
+	private void logRequest(Request request, MessageContext msgCtx) {
 		int cid = msgCtx.getConsensusId();
-		commands.add(command);
+		commands.add(request);
 		msgContexts.add(msgCtx);
 
 		if (!msgCtx.isLastInBatch()) {
@@ -626,20 +726,52 @@ public final class ConfidentialRecoverable implements SingleExecutable, Recovera
 			return;
 		}
 
+		// batches of checkpoint CIDs are also logged, since the checkpoint is saved asynchronously
+		saveCommands(commands.toArray(new Request[0]), msgContexts.toArray(new MessageContext[0]));
 		if (cid > 0 && (cid % checkpointPeriod) == 0) {
 			logger.info("Performing checkpoint for consensus " + cid);
+			if (verifyClientsRequests)
+				logger.info("Verified requests cache: {}", deserializedRequests);
+			// the log only keeps batches of two checkpoint periods, so the previous checkpoint must be saved before
+			// its batches are needed
+			waitForPendingCheckpoint();
 			stateLock.lock();
-			ConfidentialSnapshot snapshot = confidentialExecutor.getConfidentialSnapshot();
+			// full snapshots are taken at the same CIDs in all replicas, so their checkpoint hashes match
+			ConfidentialSnapshot delta = isFullSnapshotCID(cid) ? null
+					: confidentialExecutor.getConfidentialSnapshotDelta();
+			ConfidentialSnapshot snapshot = delta == null ? confidentialExecutor.getConfidentialSnapshot() : null;
 			stateLock.unlock();
-			saveState(snapshot.serialize(), cid);
-		} else {
-			saveCommands(commands.toArray(new byte[0][]), msgContexts.toArray(new MessageContext[0]));
+			if (delta != null)
+				pendingCheckpoint = checkpointExecutor.submit(() -> saveDeltaState(delta, cid));
+			else
+				pendingCheckpoint = checkpointExecutor.submit(() -> saveState(snapshot, cid));
 		}
 		getStateManager().setLastCID(cid);
 		commands.clear();
 		msgContexts.clear();
 	}
 
+	/**
+	 * Waits until the last checkpoint submitted to the checkpoint thread is saved. Since the checkpoint thread runs
+	 * its tasks in order, all previous checkpoints are saved as well.
+	 */
+	private void waitForPendingCheckpoint() {
+		Future<?> checkpoint = pendingCheckpoint;
+		if (checkpoint == null)
+			return;
+		try {
+			checkpoint.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			logger.error("Failed to save checkpoint", e.getCause());
+		}
+	}
+
+	private boolean isFullSnapshotCID(int cid) {
+		return fullSnapshotPeriod <= 1 || (cid / checkpointPeriod) % fullSnapshotPeriod == 0;
+	}
+
 	@Override
 	public void onReconfigurationRequest(TOMMessage reconfigurationRequest) {
 		logger.info("onReconfigurationRequest");
@@ -1,5 +1,7 @@
 package confidential.server;
 
+import confidential.BufferObjectInput;
+import confidential.BufferObjectOutput;
 import confidential.MessageType;
 import vss.secretsharing.VerifiableShare;
 
@@ -33,8 +35,7 @@ public final class Request {
     }
 
     public byte[] serialize() {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-             ObjectOutput out = new ObjectOutputStream(bos)) {
+        try (BufferObjectOutput out = BufferObjectOutput.acquire()) {
             out.write((byte)type.ordinal());
             out.writeInt(plainData == null ? -1 : plainData.length);
             if (plainData != null)
@@ -44,9 +45,7 @@ public final class Request {
                 for (VerifiableShare share : shares)
                     share.writeExternal(out);
             }
-            out.flush();
-            bos.flush();
-            return bos.toByteArray();
+            return out.toByteArray();
         } catch (IOException e) {
             e.printStackTrace();
             return null;
@@ -54,8 +53,7 @@ public final class Request {
     }
 
     public static Request deserialize(byte[] serializedData) {
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(serializedData);
-             ObjectInput in = new ObjectInputStream(bis)) {
+        try (ObjectInput in = BufferObjectInput.open(serializedData)) {
             MessageType type = MessageType.getMessageType(in.read());
             int len = in.readInt();
             byte[] plainData = len == -1 ? null : new byte[len];
@@ -0,0 +1,206 @@
+package confidential.server;
+
+import bftsmart.tom.util.TOMUtil;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of client requests verified before being ordered, indexed by (sender, session, sequence).
+ * Entries are evicted in insertion order when the cache is full or when they are older than the timeout, which
+ * removes requests that were verified but never ordered (e.g., failed during consensus or after a leader change).
+ * Each entry keeps the digest of the request it was computed from, and lookups only return it for a request with the
+ * same digest, since a client may send different requests with the same sequence number to different replicas.
+ */
+public final class VerifiedRequestCache {
+    private final int maxSize;
+    private final long timeoutNanos;
+    private final LinkedHashMap<RequestKey, CacheEntry> entries;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+
+    /**
+     * @param maxSize Maximum number of cached requests
+     * @param timeout Time in milliseconds after which a cached request is evicted
+     */
+    public VerifiedRequestCache(int maxSize, long timeout) {
+        this.maxSize = maxSize;
+        this.timeoutNanos = timeout * 1_000_000;
+        this.entries = new LinkedHashMap<>();
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.evictions = new AtomicLong();
+    }
+
+    /**
+     * Computes the digest identifying the content of a request
+     * @param commonContent Content sent to all replicas
+     * @param replicaSpecificContent Content sent to this replica or null
+     * @return Digest of the request
+     */
+    public static byte[] digest(byte[] commonContent, byte[] replicaSpecificContent) {
+        MessageDigest engine;
+        try {
+            engine = TOMUtil.getHashEngine();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to create request hash engine", e);
+        }
+        engine.update(commonContent == null ? new byte[0] : commonContent);
+        // separates the contents, so that moving bytes from one to the other changes the digest
+        engine.update(toBytes(commonContent == null ? -1 : commonContent.length));
+        if (replicaSpecificContent != null)
+            engine.update(replicaSpecificContent);
+        return engine.digest();
+    }
+
+    private static byte[] toBytes(int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    /**
+     * Returns the cached verification of the request. An entry computed from a different request is removed.
+     * @param digest Digest of the request
+     * @return Verification of the request or null if the request is not cached
+     */
+    public synchronized CompletableFuture<Request> get(int sender, int session, int sequence, byte[] digest) {
+        RequestKey key = new RequestKey(sender, session, sequence);
+        CacheEntry entry = entries.get(key);
+        if (entry != null && !Arrays.equals(entry.digest, digest)) {
+            entries.remove(key);
+            entry = null;
+        }
+        return countLookup(entry);
+    }
+
+    /**
+     * Returns the cached verification of the request or caches the one created by the supplier. An entry computed
+     * from a different request is replaced.
+     * @param digest Digest of the request
+     * @return Verification of the request
+     */
+    public synchronized CompletableFuture<Request> computeIfAbsent(int sender, int session, int sequence, byte[] digest,
+                                                                   Supplier<CompletableFuture<Request>> supplier) {
+        RequestKey key = new RequestKey(sender, session, sequence);
+        CacheEntry entry = entries.get(key);
+        if (entry != null && Arrays.equals(entry.digest, digest))
+            return entry.verification;
+        CompletableFuture<Request> verification = supplier.get();
+        put(key, digest, verification);
+        return verification;
+    }
+
+    public synchronized void put(int sender, int session, int sequence, byte[] digest,
+                                 CompletableFuture<Request> verification) {
+        put(new RequestKey(sender, session, sequence), digest, verification);
+    }
+
+    /**
+     * Removes the request from the cache
+     * @param digest Digest of the request
+     * @return Verification of the request or null if the request is not cached or was computed from a different
+     * request
+     */
+    public synchronized CompletableFuture<Request> remove(int sender, int session, int sequence, byte[] digest) {
+        CacheEntry entry = entries.remove(new RequestKey(sender, session, sequence));
+        if (entry != null && !Arrays.equals(entry.digest, digest))
+            entry = null;
+        return countLookup(entry);
+    }
+
+    private CompletableFuture<Request> countLookup(CacheEntry entry) {
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.verification;
+    }
+
+    private void put(RequestKey key, byte[] digest, CompletableFuture<Request> verification) {
+        long now = System.nanoTime();
+        entries.remove(key);
+        entries.put(key, new CacheEntry(digest, verification, now));
+        evict(now);
+    }
+
+    private void evict(long now) {
+        Iterator<Map.Entry<RequestKey, CacheEntry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            CacheEntry oldest = iterator.next().getValue();
+            if (entries.size() <= maxSize && now - oldest.creationTime < timeoutNanos)
+                break;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[size: %d - hits: %d - misses: %d - evictions: %d]", size(), getHits(), getMisses(),
+                getEvictions());
+    }
+
+    private static final class CacheEntry {
+        private final byte[] digest;
+        private final CompletableFuture<Request> verification;
+        private final long creationTime;
+
+        private CacheEntry(byte[] digest, CompletableFuture<Request> verification, long creationTime) {
+            this.digest = digest;
+            this.verification = verification;
+            this.creationTime = creationTime;
+        }
+    }
+
+    private static final class RequestKey {
+        private final int sender;
+        private final int session;
+        private final int sequence;
+
+        private RequestKey(int sender, int session, int sequence) {
+            this.sender = sender;
+            this.session = session;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            RequestKey that = (RequestKey) o;
+            return sender == that.sender && session == that.session && sequence == that.sequence;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = sender;
+            result = 31 * result + session;
+            result = 31 * result + sequence;
+            return result;
+        }
+    }
+}
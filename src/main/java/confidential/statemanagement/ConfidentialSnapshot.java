@@ -1,65 +1,166 @@
 package confidential.statemanagement;
 
+import bftsmart.tom.util.TOMUtil;
 import vss.secretsharing.VerifiableShare;
 
 import java.io.*;
+import java.util.Arrays;
+import java.util.function.Supplier;
 
+/**
+ * Snapshot of the application state. A snapshot may be followed by deltas, i.e., snapshots containing only the
+ * changes done after it, which must be installed in order after installing the snapshot.
+ */
 public class ConfidentialSnapshot {
-    private final byte[] plainData;
-    private final VerifiableShare[] shares;
+    private byte[] plainData;
+    private VerifiableShare[] shares;
+    private final ConfidentialSnapshot[] deltas;
+    private Supplier<ConfidentialSnapshot> deferredSnapshot;
 
     public ConfidentialSnapshot(byte[] plainData, VerifiableShare... shares) {
+        this(plainData, shares, null);
+    }
+
+    private ConfidentialSnapshot(byte[] plainData, VerifiableShare[] shares, ConfidentialSnapshot[] deltas) {
         this.plainData = plainData;
         this.shares = shares;
+        this.deltas = deltas;
+    }
+
+    /**
+     * Creates a snapshot whose data is only computed when it is first used, i.e., in the checkpoint thread when the
+     * snapshot is saved. The supplier must only read a frozen view of the state, as the application keeps executing
+     * requests meanwhile.
+     * @param deferredSnapshot Computes the snapshot without deltas
+     * @return Snapshot computed on first use
+     */
+    public static ConfidentialSnapshot deferred(Supplier<ConfidentialSnapshot> deferredSnapshot) {
+        ConfidentialSnapshot snapshot = new ConfidentialSnapshot(null, null, null);
+        snapshot.deferredSnapshot = deferredSnapshot;
+        return snapshot;
+    }
+
+    private synchronized void computeDeferredSnapshot() {
+        if (deferredSnapshot == null)
+            return;
+        ConfidentialSnapshot snapshot = deferredSnapshot.get();
+        deferredSnapshot = null;
+        if (snapshot != null) {
+            plainData = snapshot.getPlainData();
+            shares = snapshot.getShares();
+        }
+    }
+
+    /**
+     * Returns this snapshot followed by the given deltas, after the deltas this snapshot may already have
+     * @param deltas Deltas without deltas of their own
+     * @return Snapshot with deltas
+     */
+    public ConfidentialSnapshot withDeltas(ConfidentialSnapshot... deltas) {
+        computeDeferredSnapshot();
+        ConfidentialSnapshot[] allDeltas = deltas;
+        if (this.deltas != null) {
+            allDeltas = Arrays.copyOf(this.deltas, this.deltas.length + deltas.length);
+            System.arraycopy(deltas, 0, allDeltas, this.deltas.length, deltas.length);
+        }
+        return new ConfidentialSnapshot(plainData, shares, allDeltas);
     }
 
     public byte[] getPlainData() {
+        computeDeferredSnapshot();
         return plainData;
     }
 
     public VerifiableShare[] getShares() {
+        computeDeferredSnapshot();
         return shares;
     }
 
+    /**
+     * @return Deltas to install after this snapshot or null if there are none
+     */
+    public ConfidentialSnapshot[] getDeltas() {
+        return deltas;
+    }
+
+    /**
+     * Computes the hash of the state as computed when the snapshot and each of its deltas were taken, i.e., the hash
+     * of the serialized snapshot chained with the hash of each serialized delta
+     * @return Hash of the state
+     */
+    public byte[] computeHash() {
+        computeDeferredSnapshot();
+        byte[] hash = TOMUtil.computeHash(new ConfidentialSnapshot(plainData, shares).serialize());
+        if (deltas != null) {
+            for (ConfidentialSnapshot delta : deltas) {
+                hash = chainHash(hash, delta.serialize());
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Computes the hash of a state given the hash of the previous state and the delta applied to it
+     * @param previousHash Hash of the previous state
+     * @param serializedDelta Serialized delta
+     * @return Hash of the state after the delta
+     */
+    public static byte[] chainHash(byte[] previousHash, byte[] serializedDelta) {
+        byte[] deltaHash = TOMUtil.computeHash(serializedDelta);
+        byte[] chained = Arrays.copyOf(previousHash, previousHash.length + deltaHash.length);
+        System.arraycopy(deltaHash, 0, chained, previousHash.length, deltaHash.length);
+        return TOMUtil.computeHash(chained);
+    }
+
     public static ConfidentialSnapshot deserialize(byte[] serializedData) {
         try (ByteArrayInputStream bis = new ByteArrayInputStream(serializedData);
              ObjectInput in = new ObjectInputStream(bis)) {
+            ConfidentialSnapshot snapshot = readSnapshot(in);
             int len = in.readInt();
-            byte[] plainData = null;
-            if (len > -1) {
-                plainData = new byte[len];
-                in.readFully(plainData);
-            }
-
-            len = in.readInt();
-            VerifiableShare[] shares = null;
             if (len > -1) {
-                shares = new VerifiableShare[len];
-                VerifiableShare share;
+                ConfidentialSnapshot[] deltas = new ConfidentialSnapshot[len];
                 for (int i = 0; i < len; i++) {
-                    share = new VerifiableShare();
-                    share.readExternal(in);
-                    shares[i] = share;
+                    deltas[i] = readSnapshot(in);
                 }
+                snapshot = snapshot.withDeltas(deltas);
             }
-            return new ConfidentialSnapshot(plainData, shares);
+            return snapshot;
         } catch (IOException | ClassNotFoundException e) {
             e.printStackTrace();
         }
         return null;
     }
 
+    private static ConfidentialSnapshot readSnapshot(ObjectInput in) throws IOException, ClassNotFoundException {
+        int len = in.readInt();
+        byte[] plainData = null;
+        if (len > -1) {
+            plainData = new byte[len];
+            in.readFully(plainData);
+        }
+
+        len = in.readInt();
+        VerifiableShare[] shares = null;
+        if (len > -1) {
+            shares = new VerifiableShare[len];
+            VerifiableShare share;
+            for (int i = 0; i < len; i++) {
+                share = new VerifiableShare();
+                share.readExternal(in);
+                shares[i] = share;
+            }
+        }
+        return new ConfidentialSnapshot(plainData, shares);
+    }
+
     public byte[] serialize() {
         try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
              ObjectOutput out = new ObjectOutputStream(bos)) {
-            out.writeInt(plainData == null ? -1 : plainData.length);
-            if (plainData != null)
-                out.write(plainData);
-
-            out.writeInt(shares == null ? -1 : shares.length);
-            if (shares != null) {
-                for (VerifiableShare share : shares)
-                    share.writeExternal(out);
+            writeSnapshot(out);
+            out.writeInt(deltas == null ? -1 : deltas.length);
+            if (deltas != null) {
+                for (ConfidentialSnapshot delta : deltas)
+                    delta.writeSnapshot(out);
             }
             out.flush();
             bos.flush();
@@ -69,4 +170,17 @@ public class ConfidentialSnapshot {
         }
         return null;
     }
+
+    private void writeSnapshot(ObjectOutput out) throws IOException {
+        computeDeferredSnapshot();
+        out.writeInt(plainData == null ? -1 : plainData.length);
+        if (plainData != null)
+            out.write(plainData);
+
+        out.writeInt(shares == null ? -1 : shares.length);
+        if (shares != null) {
+            for (VerifiableShare share : shares)
+                share.writeExternal(out);
+        }
+    }
 }
@@ -3,39 +3,107 @@ package confidential.statemanagement;
 import bftsmart.tom.MessageContext;
 import bftsmart.tom.server.defaultservices.CommandsInfo;
 import bftsmart.tom.server.defaultservices.DefaultApplicationState;
+import confidential.server.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public class ConfidentialStateLog {
-    private Logger logger = LoggerFactory.getLogger("confidential");
+    protected final Logger logger = LoggerFactory.getLogger("confidential");
 
     private CommandsInfo[] messageBatches; // batches received since the last checkpoint.
-    private int lastCheckpointCID; // Consensus ID for the last checkpoint
-    private byte[] state; // State associated with the last checkpoint
-    private byte[] stateHash; // Hash of the state associated with the last checkpoint
-    private int position; // next position in the array of batches to be written
-    private int lastCID; // Consensus ID for the last messages batch delivered to the application
-    private int id; //replica ID
+    private Request[][] requestBatches; // requests of batches that were not serialized yet
+    protected int lastCheckpointCID; // Consensus ID for the last checkpoint
+    protected byte[] state; // State associated with the last full checkpoint
+    protected final List<byte[]> deltas; // Deltas of the checkpoints taken after the last full checkpoint
+    private byte[] stateWithDeltas; // State with the deltas included, built on the first request after a checkpoint
+    protected byte[] stateHash; // Hash of the state associated with the last checkpoint
+    protected int position; // next position in the array of batches to be written
+    protected int lastCID; // Consensus ID for the last messages batch delivered to the application
+    protected final int id; //replica ID
 
     public ConfidentialStateLog(int id, int k, byte[]initialState, byte[] initialStateHash) {
-        this.messageBatches = new CommandsInfo[k - 1];
+        this.messageBatches = new CommandsInfo[capacity(k)];
+        this.requestBatches = new Request[capacity(k)][];
         this.lastCheckpointCID = -1;
         this.state = initialState;
+        this.deltas = new ArrayList<>();
         this.stateHash = initialStateHash;
         this.position = 0;
         this.lastCID = -1;
         this.id = id;
     }
 
+    /**
+     * Returns the number of batches that can be kept in the log. Checkpoints are saved in background, therefore
+     * the log keeps the k batches covered by the checkpoint being saved plus the batches delivered meanwhile.
+     * @param k Checkpoint period
+     * @return Maximum number of batches
+     */
+    protected static int capacity(int k) {
+        return 2 * k;
+    }
+
+    /**
+     * Called before newCheckpoint without holding the lock of the log, so that expensive work can be done while
+     * new batches are added. The in-memory log has nothing to prepare.
+     */
+    public void prepareCheckpoint(byte[] state, byte[] stateHash, int lastConsensusId) {
+
+    }
+
+    /**
+     * Called before newDeltaCheckpoint without holding the lock of the log. The in-memory log has nothing to prepare.
+     */
+    public void prepareDeltaCheckpoint(byte[] delta, byte[] stateHash, int lastConsensusId) {
+
+    }
+
+    /**
+     * Replaces the checkpoint and removes the batches up to lastConsensusId. Batches delivered after
+     * lastConsensusId are kept.
+     */
     public void newCheckpoint(byte[] state, byte[] stateHash, int lastConsensusId) {
-        Arrays.fill(messageBatches, null); // removing previous messages
-        position = 0;
+        removeMessageBatches(lastConsensusId);
+        deltas.clear();
+        setCheckpoint(state, stateHash, lastConsensusId);
+    }
+
+    /**
+     * Adds a checkpoint containing only the changes since the previous checkpoint and removes the batches up to
+     * lastConsensusId
+     * @param delta Serialized delta
+     * @param stateHash Hash of the state after applying the delta
+     * @param lastConsensusId Consensus id of the checkpoint
+     */
+    public void newDeltaCheckpoint(byte[] delta, byte[] stateHash, int lastConsensusId) {
+        removeMessageBatches(lastConsensusId);
+        deltas.add(delta);
+        setCheckpoint(state, stateHash, lastConsensusId);
+    }
+
+    private void removeMessageBatches(int lastConsensusId) {
+        int removed = 0;
+        while (removed < position && messageBatches[removed].msgCtx[0].getConsensusId() <= lastConsensusId) {
+            removed++;
+        }
+        int remaining = position - removed;
+        System.arraycopy(messageBatches, removed, messageBatches, 0, remaining);
+        System.arraycopy(requestBatches, removed, requestBatches, 0, remaining);
+        Arrays.fill(messageBatches, remaining, position, null); // removing previous messages
+        Arrays.fill(requestBatches, remaining, position, null);
+        position = remaining;
+    }
+
+    protected void setCheckpoint(byte[] state, byte[] stateHash, int lastConsensusId) {
         this.state = state;
+        this.stateWithDeltas = null;
         this.stateHash = stateHash;
         this.lastCheckpointCID = lastConsensusId;
-        this.lastCID = lastConsensusId;
+        this.lastCID = Math.max(lastCID, lastConsensusId);
     }
 
     public int getLastCheckpointCID() {
@@ -46,29 +114,82 @@ public class ConfidentialStateLog {
         return lastCID;
     }
 
+    /**
+     * Returns the state of the last checkpoint. If there are deltas, they are included in the serialized snapshot,
+     * which is kept until the next checkpoint.
+     * @return Serialized snapshot
+     */
     public byte[] getState() {
-        return state;
+        if (deltas.isEmpty() || state == null)
+            return state;
+        if (stateWithDeltas == null) {
+            ConfidentialSnapshot[] deserializedDeltas = new ConfidentialSnapshot[deltas.size()];
+            for (int i = 0; i < deserializedDeltas.length; i++) {
+                deserializedDeltas[i] = ConfidentialSnapshot.deserialize(deltas.get(i));
+            }
+            stateWithDeltas = ConfidentialSnapshot.deserialize(state).withDeltas(deserializedDeltas).serialize();
+        }
+        return stateWithDeltas;
     }
 
     public byte[] getStateHash() {
         return stateHash;
     }
 
-    public void addMessageBatch(byte[][] commands, MessageContext[] msgCtx, int lastConsensusId) {
+    /**
+     * Adds a batch of requests to the log. Requests are only serialized when the batch is read from the log,
+     * i.e., during state transfer.
+     * @param requests Preprocessed requests
+     * @param msgCtx Message contexts of the requests
+     * @param lastConsensusId Consensus id of the batch
+     */
+    public void addMessageBatch(Request[] requests, MessageContext[] msgCtx, int lastConsensusId) {
         if (position < messageBatches.length) {
-            messageBatches[position] = new CommandsInfo(commands, msgCtx);
+            messageBatches[position] = new CommandsInfo(null, msgCtx);
+            requestBatches[position] = requests;
             position++;
             lastCID = lastConsensusId;
         }
     }
 
+    /**
+     * Returns the batch stored at the given position of the log
+     * @param index Position of the batch
+     * @return Batch with serialized requests
+     */
+    protected CommandsInfo readMessageBatch(int index) {
+        Request[] requests = requestBatches[index];
+        if (requests != null) {
+            byte[][] commands = new byte[requests.length][];
+            for (int i = 0; i < requests.length; i++) {
+                commands[i] = requests[i].serialize();
+            }
+            messageBatches[index].commands = commands;
+            requestBatches[index] = null;
+        }
+        return messageBatches[index];
+    }
+
+    /**
+     * Returns the first batches stored in the log
+     * @param size Number of batches
+     * @return Batches with serialized requests
+     */
+    protected CommandsInfo[] readMessageBatches(int size) {
+        for (int i = 0; i < size; i++) {
+            readMessageBatch(i);
+        }
+        return Arrays.copyOf(messageBatches, size);
+    }
+
     public CommandsInfo getMessageBatch(int cid) {
         if (cid > lastCheckpointCID && cid <= lastCID)
-            return messageBatches[cid - lastCheckpointCID - 1];
+            return readMessageBatch(cid - lastCheckpointCID - 1);
         return null;
     }
 
     public CommandsInfo[] getMessageBatches() {
+        readMessageBatches(position);
         return messageBatches;
     }
 
@@ -83,12 +204,11 @@ public class ConfidentialStateLog {
         if (cid >= lastCheckpointCID && cid <= this.lastCID) {
             logger.info("Constructing ApplicationState up until CID {}", cid);
             int size = cid - lastCheckpointCID;
-            if (size > 0) {
-                batches = Arrays.copyOf(messageBatches, size);
-            }
+            if (size > 0)
+                batches = readMessageBatches(size);
             lastCID = cid;
             return new DefaultApplicationState(batches, lastCheckpointCID,
-                    lastCID, (setState ? state : null), stateHash, id);
+                    lastCID, (setState ? getState() : null), stateHash, id);
         }
         return null;
     }
@@ -98,12 +218,15 @@ public class ConfidentialStateLog {
         if (newMsgBatches != null) {
             for (int i = 0; i < newMsgBatches.length; i++) {
                 messageBatches[i] = newMsgBatches[i];
+                requestBatches[i] = null;
                 lastCID = Math.max(lastCID, newMsgBatches[i].msgCtx[0].getConsensusId());
                 position = Math.max(position, i + 1);
             }
         }
         this.lastCheckpointCID = transState.getLastCheckpointCID();
         this.state = transState.getState();
+        this.stateWithDeltas = null;
+        this.deltas.clear();
         this.stateHash = transState.getStateHash();
     }
 }
@@ -214,9 +214,8 @@ public class ConfidentialStateManager extends StateManager implements Reconstruc
 
             DefaultSMMessage defaultSMMessage = (DefaultSMMessage) msg;
 
-            StateSeparationListener listener = (commonState, shares, commitments)
-                    -> triggerRecoveryStateTransfer(msg, defaultSMMessage.getStateSenderReplica(),
-                    defaultSMMessage.getServerPort(), commonState, shares, commitments);
+            StateSeparationListener listener = triggerRecoveryStateTransfer(msg,
+                    defaultSMMessage.getStateSenderReplica(), defaultSMMessage.getServerPort());
 
             new COBRAStateSeparator(
                     appState,
@@ -369,8 +368,7 @@ public class ConfidentialStateManager extends StateManager implements Reconstruc
     }
 
     private void handlePolynomialRecoveryRequest(PolynomialRecovery request, VerifiableShare[] points) {
-        LinkedList<Share> shares = new LinkedList<>();
-        LinkedList<Commitment> commitments = new LinkedList<>();
+        List<VerifiableShare> shares = new ArrayList<>();
 
         int[] polynomialInitialIds = request.getPolynomialInitialIds();
         int[] nPolynomialsPerId = request.getNPolynomialsPerId();
@@ -379,40 +377,51 @@ public class ConfidentialStateManager extends StateManager implements Reconstruc
             int initialId = polynomialInitialIds[i];
             int quantity = nPolynomialsPerId[i];
             for (int j = initialId; j < initialId + quantity; j++) {
-                VerifiableShare point = points[j];
-                shares.add(point.getShare());
-                commitments.add(point.getCommitments());
+                shares.add(points[j]);
             }
         }
 
-        triggerRecoveryStateTransfer(request, request.getStateSenderReplica(), request.getServerPort(),
-                new byte[0], shares, commitments);
+        // there is no common state
+        triggerRecoveryStateTransfer(request, request.getStateSenderReplica(), request.getServerPort())
+                .onSeparation(shares.size(), shares.iterator());
     }
 
-    private void triggerRecoveryStateTransfer(SMMessage recoveryMessage, int fullStateSenderReplica, int serverPort,
-                                              byte[] commonState, LinkedList<Share> shares,
-                                              LinkedList<Commitment> commitments) {
+    /**
+     * Starts sending the state to the recovering replica
+     * @return Listener that forwards the separated state to the recovering replica
+     */
+    private StateSeparationListener triggerRecoveryStateTransfer(SMMessage recoveryMessage,
+                                                                 int fullStateSenderReplica, int serverPort) {
         logger.info("Triggering recovery state transfer");
         boolean iAmStateSender =
                 fullStateSenderReplica == processId;
-        recoveryStateSender = new RecoveryBlindedStateSender(
+        RecoveryBlindedStateSender stateSender = new RecoveryBlindedStateSender(
                 SVController,
-                commonState,
-                shares,
-                commitments,
                 serverPort,
                 confidentialityScheme,
                 iAmStateSender,
                 recoveryMessage.getSender()
         );
-        recoveryStateSender.start();
-        int id = distributedPolynomialManager.createRecoveryPolynomialsFor(
-                confidentialityScheme.getShareholder(recoveryMessage.getSender()),
-                SVController.getCurrentViewF(),
-                SVController.getCurrentViewAcceptors(),
-                shares.size()
-        );
-        ongoingRecoveryRequests.put(id, recoveryMessage);
+        recoveryStateSender = stateSender;
+        stateSender.start();
+        return new StateSeparationListener() {
+            @Override
+            public void onCommonStateChunk(byte[] chunk) {
+                stateSender.addCommonStateChunk(chunk);
+            }
+
+            @Override
+            public void onSeparation(int nShares, Iterator<VerifiableShare> shares) {
+                stateSender.setShares(nShares, shares);
+                int id = distributedPolynomialManager.createRecoveryPolynomialsFor(
+                        confidentialityScheme.getShareholder(recoveryMessage.getSender()),
+                        SVController.getCurrentViewF(),
+                        SVController.getCurrentViewAcceptors(),
+                        nShares
+                );
+                ongoingRecoveryRequests.put(id, recoveryMessage);
+            }
+        };
     }
 
     private boolean isInvalidAccusation(int accuser, ProposalMessage[] invalidProposals, BigInteger[][] invalidPoints) {
@@ -523,24 +532,31 @@ public class ConfidentialStateManager extends StateManager implements Reconstruc
         dt.resumeDecisionDelivery();
         boolean iAmStateSender = leader == processId;
 
-        StateSeparationListener listener = (commonState, shares, commitments) -> {
-            resharingStateSender = new ResharingBlindedStateSender(
-                    SVController,
-                    commonState,
-                    shares,
-                    commitments,
-                    SERVER_RESHARING_STATE_LISTENING_PORT,
-                    confidentialityScheme,
-                    iAmStateSender,
-                    newGroup
-            );
-            resharingStateSender.start();
-            distributedPolynomialManager.createResharingPolynomials(
-                    currentF,
-                    currentGroup,
-                    newF,
-                    newGroup,
-                    shares.size());
+        ResharingBlindedStateSender stateSender = new ResharingBlindedStateSender(
+                SVController,
+                SERVER_RESHARING_STATE_LISTENING_PORT,
+                confidentialityScheme,
+                iAmStateSender,
+                newGroup
+        );
+        resharingStateSender = stateSender;
+        stateSender.start();
+        StateSeparationListener listener = new StateSeparationListener() {
+            @Override
+            public void onCommonStateChunk(byte[] chunk) {
+                stateSender.addCommonStateChunk(chunk);
+            }
+
+            @Override
+            public void onSeparation(int nShares, Iterator<VerifiableShare> shares) {
+                stateSender.setShares(nShares, shares);
+                distributedPolynomialManager.createResharingPolynomials(
+                        currentF,
+                        currentGroup,
+                        newF,
+                        newGroup,
+                        nShares);
+            }
         };
         new COBRAStateSeparator(
                 appState,
@@ -0,0 +1,520 @@
+package confidential.statemanagement;
+
+import bftsmart.tom.MessageContext;
+import bftsmart.tom.server.defaultservices.CommandsInfo;
+import bftsmart.tom.server.defaultservices.DefaultApplicationState;
+import confidential.server.Request;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Durable version of ConfidentialStateLog. Batches are appended to memory-mapped segment files of fixed size and the
+ * state of each checkpoint is kept in a separate checkpoint file named after its consensus id. The checkpoint with
+ * the highest consensus id is used when loading the log, followed by the delta files written after it.
+ * Each record of a segment has the format [length | consensus id | crc | serialized batch]. A record with length 0
+ * marks the end of the segment, and records with an invalid crc (i.e., partially written before a crash) end the log.
+ * Records are never moved: a checkpoint only removes the batches it covers from the index, and a segment is deleted
+ * once all its records are covered by a checkpoint.
+ * Checkpoint and delta files have the format [consensus id | hash length | hash | state length | state | crc], where
+ * the crc covers all the previous fields. Files with an invalid crc are ignored when loading the log.
+ * If sync log is enabled, each batch is forced to disk before returning, i.e., there is one fsync per consensus
+ * instance.
+ */
+public class DiskConfidentialStateLog extends ConfidentialStateLog {
+    public static final String DEFAULT_DIR = "files" + File.separator;
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int RECORD_HEADER_SIZE = 3 * Integer.BYTES;
+    private static final String SEGMENT_EXTENSION = ".seg";
+    private static final String CHECKPOINT_EXTENSION = ".ckp";
+    private static final String DELTA_EXTENSION = ".dlt";
+
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // segments are unmapped when garbage collected
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    private final Path logDirectory;
+    private final boolean syncLog;
+    private final boolean syncCkp;
+    private final NavigableMap<Integer, MappedByteBuffer> segments; // mapped segments by file number
+    private final int[] recordSegments; // segment file number of each batch since the last checkpoint
+    private final int[] recordOffsets; // offset of each batch in its segment
+    private int writeOffset; // next offset to be written in the last segment
+    private int nextSegmentNumber; // number of the next segment file to be created
+
+    public DiskConfidentialStateLog(int id, int k, byte[] initialState, byte[] initialStateHash, boolean syncLog,
+                                    boolean syncCkp) {
+        super(id, k, initialState, initialStateHash);
+        this.logDirectory = Paths.get(DEFAULT_DIR, "confidential_" + id);
+        this.syncLog = syncLog;
+        this.syncCkp = syncCkp;
+        this.segments = new TreeMap<>();
+        this.recordSegments = new int[capacity(k)];
+        this.recordOffsets = new int[capacity(k)];
+        try {
+            Files.createDirectories(logDirectory);
+        } catch (IOException e) {
+            logger.error("Failed to create log directory {}", logDirectory, e);
+        }
+    }
+
+    /**
+     * Loads the last checkpoint and the batches logged after it. The log is appended after the last valid batch.
+     * @return State stored in disk
+     */
+    public DefaultApplicationState loadDurableState() {
+        try {
+            readCheckpoint();
+            List<Path> segmentFiles = listSegmentFiles();
+            boolean endOfLog = false;
+            for (Path segmentFile : segmentFiles) {
+                if (endOfLog) {
+                    Files.delete(segmentFile);
+                    continue;
+                }
+                int segmentNumber = fileNumber(segmentFile, SEGMENT_EXTENSION);
+                MappedByteBuffer segment = mapSegment(segmentFile, (int) Files.size(segmentFile));
+                segments.put(segmentNumber, segment);
+                nextSegmentNumber = segmentNumber + 1;
+                endOfLog = !scanSegment(segmentNumber, segment);
+            }
+            removeCoveredSegments();
+            logger.info("Loaded durable state with checkpoint at CID {} ({} deltas) and {} batches up to CID {}",
+                    lastCheckpointCID, deltas.size(), position, lastCID);
+        } catch (IOException e) {
+            logger.error("Failed to load durable state", e);
+        }
+        return new DefaultApplicationState(readMessageBatches(position), lastCheckpointCID, lastCID, getState(),
+                stateHash, id);
+    }
+
+    /**
+     * Indexes the valid records of the segment
+     * @return False if the segment ends with a partially written record
+     */
+    private boolean scanSegment(int segmentNumber, MappedByteBuffer segment) {
+        int offset = 0;
+        while (offset + RECORD_HEADER_SIZE <= segment.capacity()) {
+            int length = segment.getInt(offset);
+            if (length == 0)
+                break;
+            if (length < 0 || offset + RECORD_HEADER_SIZE + length > segment.capacity()
+                    || segment.getInt(offset + 2 * Integer.BYTES) != checksum(segment, offset, length)) {
+                logger.warn("Discarding partially written batch at offset {} of segment {}", offset, segmentNumber);
+                for (int i = offset; i < segment.capacity(); i++) {
+                    segment.put(i, (byte) 0);
+                }
+                writeOffset = offset;
+                return false;
+            }
+            int cid = segment.getInt(offset + Integer.BYTES);
+            // batches that are already in the checkpoint were not deleted before a crash
+            if (cid > lastCID && position < recordOffsets.length) {
+                recordSegments[position] = segmentNumber;
+                recordOffsets[position] = offset;
+                position++;
+                lastCID = cid;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        writeOffset = offset;
+        return true;
+    }
+
+    @Override
+    public void addMessageBatch(Request[] requests, MessageContext[] msgCtx, int lastConsensusId) {
+        if (position >= recordOffsets.length)
+            return;
+        byte[][] commands = new byte[requests.length][];
+        for (int i = 0; i < requests.length; i++) {
+            commands[i] = requests[i].serialize();
+        }
+        appendRecord(new CommandsInfo(commands, msgCtx), lastConsensusId);
+    }
+
+    private void appendRecord(CommandsInfo batch, int cid) {
+        try {
+            appendRecord(serialize(batch), cid);
+        } catch (IOException e) {
+            logger.error("Failed to write batch of CID {} to disk", cid, e);
+        }
+    }
+
+    private void appendRecord(byte[] data, int cid) throws IOException {
+        int recordSize = RECORD_HEADER_SIZE + data.length;
+        if (segments.isEmpty() || writeOffset + recordSize > currentSegment().capacity()) {
+            int segmentNumber = nextSegmentNumber++;
+            segments.put(segmentNumber, mapSegment(segmentFile(segmentNumber), Math.max(SEGMENT_SIZE, recordSize)));
+            writeOffset = 0;
+        }
+        MappedByteBuffer segment = currentSegment();
+        segment.put(writeOffset + RECORD_HEADER_SIZE, data);
+        segment.putInt(writeOffset + Integer.BYTES, cid);
+        segment.putInt(writeOffset + 2 * Integer.BYTES, checksum(data));
+        // length is written last, so the record is only visible once complete
+        segment.putInt(writeOffset, data.length);
+        if (syncLog)
+            segment.force(writeOffset, recordSize);
+
+        recordSegments[position] = segments.lastKey();
+        recordOffsets[position] = writeOffset;
+        position++;
+        lastCID = Math.max(lastCID, cid);
+        writeOffset += recordSize;
+    }
+
+    @Override
+    protected CommandsInfo readMessageBatch(int index) {
+        MappedByteBuffer segment = segments.get(recordSegments[index]);
+        int offset = recordOffsets[index];
+        byte[] data = new byte[segment.getInt(offset)];
+        segment.get(offset + RECORD_HEADER_SIZE, data);
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return (CommandsInfo) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            logger.error("Failed to read batch {} from disk", index, e);
+            return null;
+        }
+    }
+
+    @Override
+    protected CommandsInfo[] readMessageBatches(int size) {
+        CommandsInfo[] result = new CommandsInfo[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = readMessageBatch(i);
+        }
+        return result;
+    }
+
+    @Override
+    public CommandsInfo[] getMessageBatches() {
+        return readMessageBatches(position);
+    }
+
+    /**
+     * Writes the checkpoint file, which is only used once newCheckpoint removes the batches it covers
+     */
+    @Override
+    public void prepareCheckpoint(byte[] state, byte[] stateHash, int lastConsensusId) {
+        writeCheckpointFile(checkpointFile(lastConsensusId), state, stateHash, lastConsensusId);
+    }
+
+    /**
+     * Writes the delta file, which is only used once newDeltaCheckpoint removes the batches it covers
+     */
+    @Override
+    public void prepareDeltaCheckpoint(byte[] delta, byte[] stateHash, int lastConsensusId) {
+        writeCheckpointFile(deltaFile(lastConsensusId), delta, stateHash, lastConsensusId);
+    }
+
+    /**
+     * Removes the previous checkpoints and the batches up to lastConsensusId
+     */
+    @Override
+    public void newCheckpoint(byte[] state, byte[] stateHash, int lastConsensusId) {
+        if (state != null && !Files.exists(checkpointFile(lastConsensusId)))
+            writeCheckpointFile(checkpointFile(lastConsensusId), state, stateHash, lastConsensusId);
+        removeMessageBatches(lastConsensusId);
+        try {
+            for (Path checkpointFile : listFiles(CHECKPOINT_EXTENSION)) {
+                if (fileNumber(checkpointFile, CHECKPOINT_EXTENSION) < lastConsensusId)
+                    Files.delete(checkpointFile);
+            }
+            for (Path deltaFile : listFiles(DELTA_EXTENSION)) {
+                if (fileNumber(deltaFile, DELTA_EXTENSION) <= lastConsensusId)
+                    Files.delete(deltaFile);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to remove checkpoints up to CID {} from disk", lastConsensusId, e);
+        }
+        deltas.clear();
+        setCheckpoint(state, stateHash, lastConsensusId);
+    }
+
+    /**
+     * Keeps the delta file next to the last full checkpoint and removes the batches up to lastConsensusId
+     */
+    @Override
+    public void newDeltaCheckpoint(byte[] delta, byte[] stateHash, int lastConsensusId) {
+        if (!Files.exists(deltaFile(lastConsensusId)))
+            writeCheckpointFile(deltaFile(lastConsensusId), delta, stateHash, lastConsensusId);
+        removeMessageBatches(lastConsensusId);
+        deltas.add(delta);
+        setCheckpoint(state, stateHash, lastConsensusId);
+    }
+
+    /**
+     * Removes the batches up to lastConsensusId from the index. The batches delivered after it stay in their
+     * segments, therefore only segments whose records are all covered by the checkpoint are deleted.
+     */
+    private void removeMessageBatches(int lastConsensusId) {
+        int removed = 0;
+        while (removed < position && recordCID(removed) <= lastConsensusId) {
+            removed++;
+        }
+        int remaining = position - removed;
+        System.arraycopy(recordSegments, removed, recordSegments, 0, remaining);
+        System.arraycopy(recordOffsets, removed, recordOffsets, 0, remaining);
+        position = remaining;
+        removeCoveredSegments();
+    }
+
+    /**
+     * Deletes the segments before the one containing the first batch in the log. The segment being written is
+     * kept even if all its batches are covered by a checkpoint.
+     */
+    private void removeCoveredSegments() {
+        if (segments.isEmpty())
+            return;
+        int firstNeededSegment = position > 0 ? recordSegments[0] : segments.lastKey();
+        Iterator<Map.Entry<Integer, MappedByteBuffer>> coveredSegments =
+                segments.headMap(firstNeededSegment, false).entrySet().iterator();
+        while (coveredSegments.hasNext()) {
+            Map.Entry<Integer, MappedByteBuffer> segment = coveredSegments.next();
+            coveredSegments.remove();
+            unmap(segment.getValue());
+            try {
+                Files.delete(segmentFile(segment.getKey()));
+            } catch (IOException e) {
+                logger.error("Failed to delete segment {}", segment.getKey(), e);
+            }
+        }
+    }
+
+    private int recordCID(int index) {
+        return segments.get(recordSegments[index]).getInt(recordOffsets[index] + Integer.BYTES);
+    }
+
+    /**
+     * Stores the received state in disk. The checkpoint is only replaced if it is different from the current one,
+     * therefore updating the log with the state returned by loadDurableState does not write anything.
+     */
+    @Override
+    public void update(DefaultApplicationState transState) {
+        if (transState.getLastCheckpointCID() != lastCheckpointCID
+                || !Arrays.equals(transState.getStateHash(), stateHash))
+            newCheckpoint(transState.getState(), transState.getStateHash(), transState.getLastCheckpointCID());
+        CommandsInfo[] newMsgBatches = transState.getMessageBatches();
+        if (newMsgBatches != null) {
+            for (CommandsInfo batch : newMsgBatches) {
+                int cid = batch.msgCtx[0].getConsensusId();
+                if (cid > lastCID && position < recordOffsets.length)
+                    appendRecord(batch, cid);
+            }
+        }
+    }
+
+    private void writeCheckpointFile(Path checkpointFile, byte[] state, byte[] stateHash, int lastConsensusId) {
+        Path temporaryFile = logDirectory.resolve(checkpointFile.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(3 * Integer.BYTES + stateHash.length);
+            header.putInt(lastConsensusId);
+            header.putInt(stateHash.length);
+            header.put(stateHash);
+            header.putInt(state.length);
+            header.flip();
+            CRC32 crc = new CRC32();
+            crc.update(header.duplicate());
+            crc.update(state);
+            ByteBuffer data = ByteBuffer.wrap(state);
+            ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES);
+            trailer.putInt((int) crc.getValue());
+            trailer.flip();
+            while (header.hasRemaining() || data.hasRemaining() || trailer.hasRemaining()) {
+                channel.write(new ByteBuffer[]{header, data, trailer});
+            }
+            if (syncCkp)
+                channel.force(true);
+        } catch (IOException e) {
+            logger.error("Failed to write checkpoint of CID {} to disk", lastConsensusId, e);
+            return;
+        }
+        try {
+            Files.move(temporaryFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("Failed to rename checkpoint file of CID {}", lastConsensusId, e);
+        }
+    }
+
+    /**
+     * Reads the most recent valid checkpoint and the deltas written after it
+     */
+    private void readCheckpoint() throws IOException {
+        List<Path> checkpointFiles = listFiles(CHECKPOINT_EXTENSION);
+        for (int i = checkpointFiles.size() - 1; i >= 0; i--) {
+            Path checkpointFile = checkpointFiles.get(i);
+            CheckpointFile checkpoint = readCheckpointFile(checkpointFile, CHECKPOINT_EXTENSION);
+            if (checkpoint == null) {
+                logger.warn("Ignoring corrupted checkpoint file {}", checkpointFile);
+                continue;
+            }
+            setCheckpoint(checkpoint.state, checkpoint.stateHash, checkpoint.cid);
+            readDeltas(checkpoint.cid);
+            return;
+        }
+    }
+
+    /**
+     * Reads the deltas taken after the checkpoint in order, stopping at the first corrupted one
+     */
+    private void readDeltas(int checkpointCID) throws IOException {
+        for (Path deltaFile : listFiles(DELTA_EXTENSION)) {
+            if (fileNumber(deltaFile, DELTA_EXTENSION) <= checkpointCID)
+                continue;
+            CheckpointFile delta = readCheckpointFile(deltaFile, DELTA_EXTENSION);
+            if (delta == null) {
+                logger.warn("Ignoring corrupted delta file {} and the ones after it", deltaFile);
+                return;
+            }
+            deltas.add(delta.state);
+            setCheckpoint(state, delta.stateHash, delta.cid);
+        }
+    }
+
+    /**
+     * @return Content of the file or null if it is incomplete, does not match its crc or its name
+     */
+    private static CheckpointFile readCheckpointFile(Path file, String extension) {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(
+                Files.newInputStream(file)), crc))) {
+            long remaining = Files.size(file);
+            int cid = in.readInt();
+            int hashLength = in.readInt();
+            if (hashLength < 0 || hashLength > remaining)
+                return null;
+            byte[] stateHash = new byte[hashLength];
+            in.readFully(stateHash);
+            int stateLength = in.readInt();
+            if (stateLength < 0 || stateLength > remaining)
+                return null;
+            byte[] state = new byte[stateLength];
+            in.readFully(state);
+            int expectedCrc = (int) crc.getValue();
+            if (in.readInt() != expectedCrc || in.read() != -1 || cid != fileNumber(file, extension))
+                return null;
+            return new CheckpointFile(cid, stateHash, state);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private Path checkpointFile(int cid) {
+        return logDirectory.resolve(String.format("%010d%s", cid, CHECKPOINT_EXTENSION));
+    }
+
+    private Path segmentFile(int segmentNumber) {
+        return logDirectory.resolve(String.format("%08d%s", segmentNumber, SEGMENT_EXTENSION));
+    }
+
+    private Path deltaFile(int cid) {
+        return logDirectory.resolve(String.format("%010d%s", cid, DELTA_EXTENSION));
+    }
+
+    private List<Path> listSegmentFiles() throws IOException {
+        return listFiles(SEGMENT_EXTENSION);
+    }
+
+    private List<Path> listFiles(String extension) throws IOException {
+        try (Stream<Path> files = Files.list(logDirectory)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(extension))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static int fileNumber(Path file, String extension) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(0, name.length() - extension.length()));
+    }
+
+    private MappedByteBuffer currentSegment() {
+        return segments.lastEntry().getValue();
+    }
+
+    /**
+     * Unmaps the segment before its file is deleted, since some platforms do not delete mapped files. The segment
+     * must not be accessed afterwards.
+     */
+    private void unmap(MappedByteBuffer segment) {
+        if (INVOKE_CLEANER == null)
+            return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, segment);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Failed to unmap segment", e);
+        }
+    }
+
+    private static MappedByteBuffer mapSegment(Path segmentFile, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static byte[] serialize(CommandsInfo batch) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(batch);
+        }
+        return bos.toByteArray();
+    }
+
+    private static int checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static int checksum(MappedByteBuffer segment, int offset, int length) {
+        CRC32 crc = new CRC32();
+        int start = offset + RECORD_HEADER_SIZE;
+        crc.update(segment.duplicate().position(start).limit(start + length));
+        return (int) crc.getValue();
+    }
+
+    private static class CheckpointFile {
+        private final int cid;
+        private final byte[] stateHash;
+        private final byte[] state;
+
+        private CheckpointFile(int cid, byte[] stateHash, byte[] state) {
+            this.cid = cid;
+            this.stateHash = stateHash;
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package confidential.statemanagement.privatestate;
+
+/**
+ * Frames of the blinded data sent from a BlindedDataSender to a BlindedDataReceiver. Each frame has the format
+ * [length | type | payload], where length counts the type and the payload, so the receiver can read the frames of all
+ * senders without blocking. A sender sends, in order:
+ * SENDER, COMMON_STATE_CHUNK* COMMON_STATE_END or COMMON_STATE_HASH, BLINDED_SHARES*, COMMITMENTS_HASH (only if the
+ * commitments are not sent with the shares) and END.
+ */
+public final class BlindedDataFrame {
+    public static final int HEADER_SIZE = Integer.BYTES + 1;
+    public static final int MAX_FRAME_SIZE = 256 * 1024 * 1024;
+
+    /** Process id of the sender */
+    public static final byte SENDER = 0;
+    /** Chunk of the common state */
+    public static final byte COMMON_STATE_CHUNK = 1;
+    /** End of the common state */
+    public static final byte COMMON_STATE_END = 2;
+    /** Hash of the common state, sent instead of the common state */
+    public static final byte COMMON_STATE_HASH = 3;
+    /** Chunk of blinded shares serialized using BufferObjectOutput, with the commitments of the shares if sent */
+    public static final byte BLINDED_SHARES = 4;
+    /** Hash of the commitments, sent instead of the commitments */
+    public static final byte COMMITMENTS_HASH = 5;
+    /** End of the blinded data */
+    public static final byte END = 6;
+
+    private BlindedDataFrame() {
+    }
+}
@@ -2,23 +2,45 @@ package confidential.statemanagement.privatestate.receiver;
 
 import bftsmart.reconfiguration.ServerViewController;
 import bftsmart.reconfiguration.views.View;
+import bftsmart.tom.util.TOMUtil;
+import confidential.BufferObjectInput;
 import confidential.Configuration;
-import confidential.statemanagement.utils.HashThread;
+import confidential.statemanagement.privatestate.BlindedDataFrame;
+import confidential.statemanagement.utils.ChunkedData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import vss.commitment.Commitment;
 import vss.commitment.CommitmentUtils;
+import vss.secretsharing.Share;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInput;
-import java.io.ObjectInputStream;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Receives the blinded data from all senders at the same time. The connections are read by a single selector thread
+ * without blocking, each one with its own buffers and common state hash, while the chunks of blinded shares are
+ * decoded in parallel as they arrive. The data of a sender is delivered to the BlindedStateHandler once all its
+ * chunks are decoded.
+ */
 public class BlindedDataReceiver extends Thread {
     private final Logger logger = LoggerFactory.getLogger("state_transfer");
     private final BlindedStateHandler blindedStateHandler;
@@ -27,8 +49,13 @@ public class BlindedDataReceiver extends Thread {
     private final int serverPort;
     private final int quorum;
     private final int stateSenderReplica;
-    private ServerSocket serverSocket;
     private final CommitmentUtils commitmentUtils;
+    private final AtomicInteger nReceivedStates;
+    private volatile boolean receivedFullState;
+    private volatile Selector selector;
+    private volatile ServerSocketChannel serverChannel;
+    private ExecutorService decodingExecutor;
+    private ExecutorService deliveryExecutor;
 
     public BlindedDataReceiver(BlindedStateHandler blindedStateHandler, ServerViewController svController,
                                int serverPort, int quorum, int stateSenderReplica) throws IOException {
@@ -41,6 +68,7 @@ public class BlindedDataReceiver extends Thread {
         View currentView = svController.getCurrentView();
         this.knownServerIps = new HashSet<>(currentView.getN());
         this.commitmentUtils = CommitmentUtils.getInstance();
+        this.nReceivedStates = new AtomicInteger();
         for (int process : currentView.getProcesses()) {
             String ip = currentView.getAddress(process).getAddress().getHostAddress();
             knownServerIps.add(ip);
@@ -49,189 +77,295 @@ public class BlindedDataReceiver extends Thread {
 
     public void shutdown() {
         try {
-            if (serverSocket != null && serverSocket.isBound())
-                serverSocket.close();
+            if (serverChannel != null && serverChannel.isOpen())
+                serverChannel.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
+        if (selector != null)
+            selector.wakeup();
     }
 
     @Override
     public void run() {
         boolean usingLinearScheme = Configuration.getInstance().getVssScheme().equals("1");
+        decodingExecutor = Executors.newFixedThreadPool(Configuration.getInstance().getShareProcessingThreads());
+        deliveryExecutor = Executors.newSingleThreadExecutor();
 
-        try (ServerSocket serverSocket = new ServerSocket()) {
-            this.serverSocket = serverSocket;
+        try (Selector selector = Selector.open();
+             ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            this.selector = selector;
+            this.serverChannel = serverChannel;
             String myIp = svController.getStaticConf()
                     .getLocalAddress(svController.getStaticConf().getProcessId())
                     .getAddress().getHostAddress();
-            serverSocket.bind(new InetSocketAddress(myIp, serverPort));
-            logger.debug("Listening for blinded data on {}:{} (pid:{})",
-                    serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort(), this.getId());
-            int nReceivedStates = 0;
-            boolean receivedFullState = false;
-            while (nReceivedStates < quorum || !receivedFullState) {
-                try (Socket client = serverSocket.accept();
-                     ObjectInput in = new ObjectInputStream(client.getInputStream())) {
-                    client.setKeepAlive(true);
-                    client.setTcpNoDelay(true);
-
-                    String clientIp = client.getInetAddress().getHostAddress();
-                    if (!knownServerIps.contains(clientIp)) {
-                        logger.warn("Received connection from unknown server with ip {}", clientIp);
-                        continue;
-                    }
-
-                    long t1CommonState, t1Commitments, t1BlindedShares;
-                    long t2CommonState, t2Commitments, t2BlindedShares;
-                    long elapsedTotal, elapsedCommonState = 0, elapsedCommitments = 0, elapsedBlindedShares = 0;
-
-                    byte[] commonState = null;
-                    byte[] commonStateHash = null;
-                    byte[][] shares;
-                    Commitment[] commitments = null;
-                    byte[] commitmentsHash = null;
-
-                    int pid = in.readInt();
-
-                    logger.debug("Going to receive blinded data from {}", pid);
-
-                    //Reading common state
-                    HashThread commonStateHashThread = null;
-                    byte flag = (byte) in.read();
-                    int size = in.readInt();
-                    if (flag == 0) {
-                        logger.debug("Going to receive {} bytes of common state", size);
-                        commonState = new byte[size];
-                        commonStateHashThread = new HashThread();
-                        commonStateHashThread.setData(commonState);
-                        commonStateHashThread.start();
-                        int i = 0;
-                        while (i < size) {
-                            t1CommonState = System.nanoTime();
-                            int received = in.read(commonState, i, size - i);
-                            t2CommonState = System.nanoTime();
-                            elapsedCommonState += t2CommonState - t1CommonState;
-                            if (received > -1) {
-                                commonStateHashThread.update(i, received);
-                                i += received;
-                            }
-                        }
-                        logger.debug("Received common state from {}", pid);
-                        commonStateHashThread.update(-1, -1);
-                    } else {
-                        logger.debug("Going to receive common state hash");
-                        commonStateHash = new byte[size];
-                        t1CommonState = System.nanoTime();
-                        in.readFully(commonStateHash);
-                        t2CommonState = System.nanoTime();
-                        elapsedCommonState += t2CommonState - t1CommonState;
+            serverChannel.bind(new InetSocketAddress(myIp, serverPort));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            logger.debug("Listening for blinded data on {}:{} (pid:{})", myIp, serverPort, this.getId());
+            try {
+                while (nReceivedStates.get() < quorum || !receivedFullState) {
+                    selector.select();
+                    if (!serverChannel.isOpen()) {
+                        logger.debug("Blinded data receiver server is closed");
+                        break;
                     }
-
-                    //Trying to read commitments
-                    HashThread commitmentsHashThread = null;
-                    if (usingLinearScheme) {
-                        flag = (byte) in.read();
-                        if (flag == 0) {
-                            t1Commitments = System.nanoTime();
-                            int nCommitments = in.readInt();
-                            t2Commitments = System.nanoTime();
-                            elapsedCommitments += t2Commitments - t1Commitments;
-                            logger.debug("Going to receive {} commitments from {}", nCommitments, pid);
-                            commitments = new Commitment[nCommitments];
-
-                            int totalCommitmentsArraySize = 4 * nCommitments;
-                            byte[] commitmentsHashArray = new byte[totalCommitmentsArraySize];
-
-                            commitmentsHashThread = new HashThread();
-                            commitmentsHashThread.setData(commitmentsHashArray);
-                            commitmentsHashThread.start();
-                            int index = 0;
-                            byte[] b;
-                            for (int i = 0; i < nCommitments; i++) {
-                                t1Commitments = System.nanoTime();
-                                commitments[i] = commitmentUtils.readCommitment(in);
-                                t2Commitments = System.nanoTime();
-                                elapsedCommitments += t2Commitments - t1Commitments;
-                                b = confidential.Utils.toBytes(commitments[i].consistentHash());
-                                for (byte value : b) {
-                                    commitmentsHashArray[index++] = value;
+                    Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                    while (selectedKeys.hasNext()) {
+                        SelectionKey key = selectedKeys.next();
+                        selectedKeys.remove();
+                        if (!key.isValid())
+                            continue;
+                        if (key.isAcceptable()) {
+                            acceptConnection(selector, serverChannel);
+                        } else if (key.isReadable()) {
+                            SenderConnection connection = (SenderConnection) key.attachment();
+                            try {
+                                if (connection.read()) {
+                                    key.cancel();
+                                    connection.channel.close();
+                                    deliveryExecutor.execute(() -> deliver(connection, usingLinearScheme));
                                 }
-                                commitmentsHashThread.update(index - 4, 4);
+                            } catch (IOException e) {
+                                logger.error("Failed to receive data from {}", connection.ip, e);
+                                key.cancel();
+                                connection.channel.close();
                             }
-                            commitmentsHashThread.update(-1, -1);
-                        }
-                    } else {
-                        int nCommitments = in.readInt();
-                        commitments = new Commitment[nCommitments];
-                        for (int i = 0; i < nCommitments; i++) {
-                            t1Commitments = System.nanoTime();
-                            commitments[i] = commitmentUtils.readCommitment(in);
-                            t2Commitments = System.nanoTime();
-                            elapsedCommitments += t2Commitments - t1Commitments;
                         }
                     }
+                }
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.channel() != serverChannel)
+                        key.channel().close();
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to initialize server socket.", e);
+        } finally {
+            decodingExecutor.shutdown();
+            deliveryExecutor.shutdown();
+        }
+        logger.debug("Exiting blinded data receiver thread");
+    }
 
+    private void acceptConnection(Selector selector, ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel client = serverChannel.accept();
+        if (client == null)
+            return;
+        String clientIp = client.socket().getInetAddress().getHostAddress();
+        if (!knownServerIps.contains(clientIp)) {
+            logger.warn("Received connection from unknown server with ip {}", clientIp);
+            client.close();
+            return;
+        }
+        try {
+            client.socket().setKeepAlive(true);
+            client.socket().setTcpNoDelay(true);
+            client.configureBlocking(false);
+            client.register(selector, SelectionKey.OP_READ, new SenderConnection(client, clientIp));
+        } catch (NoSuchAlgorithmException e) {
+            logger.error("Failed to create hash engine.", e);
+            client.close();
+        }
+    }
 
-                    //Reading blinded shares
-                    int nShares = in.readInt();
-                    logger.debug("Going to receive {} shares from {}", nShares, pid);
-                    shares = new byte[nShares][];
-                    byte[] b;
-                    for (int i = 0; i < nShares; i++) {
-                        size = in.readInt();
-                        b = new byte[size];
-                        t1BlindedShares = System.nanoTime();
-                        in.readFully(b);
-                        t2BlindedShares = System.nanoTime();
-                        elapsedBlindedShares += t2BlindedShares - t1BlindedShares;
-                        shares[i] = b;
-                    }
+    /**
+     * Waits for the chunks of blinded shares of the sender to be decoded and delivers its data to the handler.
+     */
+    private void deliver(SenderConnection connection, boolean usingLinearScheme) {
+        int pid = connection.pid;
+        // commitments hash is only sent instead of the commitments
+        boolean receivingCommitments = connection.commitmentsHash == null;
+        List<Share> shares = new ArrayList<>();
+        List<Commitment> commitments = receivingCommitments ? new ArrayList<>() : null;
+        boolean validShares = true;
+        long t1 = System.nanoTime();
+        try {
+            for (Future<DecodedShares> decodedChunk : connection.decodedChunks) {
+                DecodedShares chunk = decodedChunk.get();
+                if (chunk.shares == null)
+                    validShares = false;
+                else if (validShares)
+                    shares.addAll(Arrays.asList(chunk.shares));
+                if (receivingCommitments && chunk.commitments != null)
+                    commitments.addAll(Arrays.asList(chunk.commitments));
+            }
+            byte[] commitmentsHash = connection.commitmentsHash;
+            if (receivingCommitments && usingLinearScheme) {
+                MessageDigest commitmentsDigest = TOMUtil.getHashEngine();
+                for (Commitment commitment : commitments) {
+                    commitmentsDigest.update(confidential.Utils.toBytes(commitment.consistentHash()));
+                }
+                commitmentsHash = commitmentsDigest.digest();
+            }
+            long t2 = System.nanoTime();
+            logger.debug("Received {} blinded shares from {}", shares.size(), pid);
+            logger.debug("Took {} ms to receive state from {} (total)",
+                    (connection.endTime - connection.startTime) / 1_000_000.0, pid);
+            logger.debug("Waited {} ms for blinded shares of {} to be decoded", (t2 - t1) / 1_000_000.0, pid);
+            blindedStateHandler.deliverBlindedData(pid, validShares ? shares.toArray(new Share[0]) : null,
+                    connection.commonState, connection.commonStateHash,
+                    commitments == null ? null : commitments.toArray(new Commitment[0]), commitmentsHash);
+            if (pid == stateSenderReplica)
+                receivedFullState = true;
+            nReceivedStates.incrementAndGet();
+            Selector selector = this.selector;
+            if (selector != null)
+                selector.wakeup();
+        } catch (ExecutionException e) {
+            logger.error("Failed to receive data from {}", pid, e.getCause());
+        } catch (NoSuchAlgorithmException e) {
+            logger.error("Failed to create hash engine.", e);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
 
-                    logger.debug("Received blinded state from {}", pid);
+    /**
+     * Decodes a chunk of blinded shares and their commitments, if they were sent.
+     */
+    private DecodedShares decodeBlindedShares(int from, byte[] serializedChunk) throws IOException,
+            ClassNotFoundException {
+        try (BufferObjectInput in = BufferObjectInput.open(serializedChunk)) {
+            int nShares = in.readInt();
+            int nCommitments = in.readInt();
+            Commitment[] commitments = null;
+            if (nCommitments >= 0) {
+                commitments = new Commitment[nCommitments];
+                for (int i = 0; i < nCommitments; i++) {
+                    commitments[i] = commitmentUtils.readCommitment(in);
+                }
+            }
+            byte[][] encodedShares = new byte[nShares][];
+            for (int i = 0; i < nShares; i++) {
+                byte[] b = new byte[in.readInt()];
+                in.readFully(b);
+                encodedShares[i] = b;
+            }
+            Share[] shares;
+            try {
+                shares = blindedStateHandler.reconstructBlindedShares(from, encodedShares);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to reconstruct chunk of blinded shares from {}", from, e);
+                shares = null;
+            }
+            return new DecodedShares(shares, commitments);
+        }
+    }
 
-                    //Reading commitments
-                    if (commitments == null) {
-                        size = in.readInt();
-                        commitmentsHash = new byte[size];
+    private static final class DecodedShares {
+        private final Share[] shares;
+        private final Commitment[] commitments;
 
-                        t1Commitments = System.nanoTime();
-                        in.readFully(commitmentsHash);
-                        t2Commitments = System.nanoTime();
-                        elapsedCommitments += t2Commitments - t1Commitments;
-                    } else if (commitmentsHashThread != null) {
-                        commitmentsHash = commitmentsHashThread.getHash();
-                    }
-                    if (commonStateHashThread != null) {
-                        commonStateHash = commonStateHashThread.getHash();
-                    }
+        private DecodedShares(Share[] shares, Commitment[] commitments) {
+            this.shares = shares;
+            this.commitments = commitments;
+        }
+    }
 
-                    elapsedTotal = elapsedCommonState + elapsedCommitments + elapsedBlindedShares;
-
-                    logger.debug("Took {} ms to receive common state from {}", elapsedCommonState / 1_000_000.0, pid);
-                    logger.debug("Took {} ms to receive commitments from {}", elapsedCommitments / 1_000_000.0, pid);
-                    logger.debug("Took {} ms to receive blinded shares from {}", elapsedBlindedShares / 1_000_000.0, pid);
-                    logger.debug("Took {} ms to receive state from {} (total)", elapsedTotal / 1_000_000.0, pid);
-                    blindedStateHandler.deliverBlindedData(pid, shares, commonState, commonStateHash,
-                            commitments, commitmentsHash);
-                    if (pid == stateSenderReplica)
-                        receivedFullState = true;
-                    nReceivedStates++;
-                } catch (NoSuchAlgorithmException e) {
-                    logger.error("Failed to create hash thread.", e);
-                } catch (ClassNotFoundException e) {
-                    logger.error("Failed to read commitments.", e);
-                } catch (IOException e) {
-                    if (serverSocket.isClosed()) {
-                        logger.debug("Blinded data receiver server is closed");
-                        break;
-                    }
-                    logger.error("Failed to receive data", e);
+    /**
+     * State of the connection with a sender. Only accessed by the selector thread until the END frame is received.
+     */
+    private final class SenderConnection {
+        private final SocketChannel channel;
+        private final String ip;
+        private final ByteBuffer header;
+        private ByteBuffer payload;
+        private byte frameType;
+        private int pid;
+        private final MessageDigest commonStateDigest;
+        private ChunkedData commonState;
+        private byte[] commonStateHash;
+        private byte[] commitmentsHash;
+        private final List<Future<DecodedShares>> decodedChunks;
+        private final long startTime;
+        private long endTime;
+
+        private SenderConnection(SocketChannel channel, String ip) throws NoSuchAlgorithmException {
+            this.channel = channel;
+            this.ip = ip;
+            this.header = ByteBuffer.allocate(BlindedDataFrame.HEADER_SIZE);
+            this.pid = -1;
+            this.commonStateDigest = TOMUtil.getHashEngine();
+            this.decodedChunks = new ArrayList<>();
+            this.startTime = System.nanoTime();
+        }
+
+        /**
+         * Reads the available frames
+         * @return true if the END frame was received
+         */
+        private boolean read() throws IOException {
+            while (true) {
+                if (payload == null) {
+                    if (channel.read(header) < 0)
+                        throw new EOFException("Connection closed by " + ip);
+                    if (header.hasRemaining())
+                        return false;
+                    header.flip();
+                    int length = header.getInt();
+                    frameType = header.get();
+                    header.clear();
+                    if (length <= 0 || length > BlindedDataFrame.MAX_FRAME_SIZE)
+                        throw new IOException("Invalid frame length " + length + " from " + ip);
+                    payload = ByteBuffer.allocate(length - 1);
                 }
+                if (payload.hasRemaining() && channel.read(payload) < 0)
+                    throw new EOFException("Connection closed by " + ip);
+                if (payload.hasRemaining())
+                    return false;
+                byte[] data = payload.array();
+                payload = null;
+                if (handleFrame(frameType, data))
+                    return true;
+            }
+        }
+
+        private boolean handleFrame(byte type, byte[] data) throws IOException {
+            if (type == BlindedDataFrame.SENDER) {
+                if (pid != -1 || data.length != Integer.BYTES)
+                    throw new IOException("Invalid sender frame from " + ip);
+                pid = ByteBuffer.wrap(data).getInt();
+                logger.debug("Going to receive blinded data from {}", pid);
+                return false;
+            }
+            if (pid == -1)
+                throw new IOException("Received blinded data from " + ip + " before its sender");
+            switch (type) {
+                case BlindedDataFrame.COMMON_STATE_CHUNK:
+                    if (commonState == null) {
+                        logger.debug("Going to receive common state from {}", pid);
+                        commonState = new ChunkedData();
+                    }
+                    commonStateDigest.update(data);
+                    commonState.add(data);
+                    return false;
+                case BlindedDataFrame.COMMON_STATE_END:
+                    if (commonState == null)
+                        commonState = new ChunkedData();
+                    commonStateHash = commonStateDigest.digest();
+                    logger.debug("Received {} bytes of common state from {}", commonState.length(), pid);
+                    return false;
+                case BlindedDataFrame.COMMON_STATE_HASH:
+                    commonStateHash = data;
+                    logger.debug("Received common state hash from {}", pid);
+                    return false;
+                case BlindedDataFrame.BLINDED_SHARES:
+                    int from = pid;
+                    decodedChunks.add(decodingExecutor.submit(() -> decodeBlindedShares(from, data)));
+                    return false;
+                case BlindedDataFrame.COMMITMENTS_HASH:
+                    commitmentsHash = data;
+                    return false;
+                case BlindedDataFrame.END:
+                    if (commonStateHash == null)
+                        throw new IOException("Received blinded data from " + pid + " without common state");
+                    endTime = System.nanoTime();
+                    return true;
+                default:
+                    throw new IOException("Unknown frame type " + type + " from " + pid);
             }
-        } catch (IOException e) {
-            logger.error("Failed to initialize server socket.", e);
         }
-        logger.debug("Exiting blinded data receiver thread");
     }
 }
@@ -6,6 +6,7 @@ import confidential.server.ServerConfidentialityScheme;
 import confidential.statemanagement.privatestate.commitments.BlindedCommitmentHandler;
 import confidential.statemanagement.privatestate.commitments.ConstantCommitmentHandler;
 import confidential.statemanagement.privatestate.commitments.LinearCommitmentHandler;
+import confidential.statemanagement.utils.ChunkedData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import vss.commitment.Commitment;
@@ -42,9 +43,9 @@ public abstract class BlindedStateHandler extends Thread {
     protected final Set<Integer> stillValidSenders;
 
     private final Map<Integer, Integer> commonState;
-    private byte[] selectedCommonState;
+    private ChunkedData selectedCommonState;
     private int selectedCommonStateHash;
-    private byte[] correctCommonState;
+    private ChunkedData correctCommonState;
     private int nCommonStateReceived;
 
     private final Map<Integer, Share[]> allBlindedShares;
@@ -98,8 +99,12 @@ public abstract class BlindedStateHandler extends Thread {
         super.interrupt();
     }
 
-    public void deliverBlindedData(int from, byte[][] shares, byte[] serializedCommonState, byte[] commonStateHash,
-                                   Commitment[] commitments, byte[] commitmentsHash) {
+    /**
+     * @param blindedShares Blinded shares already reconstructed using reconstructBlindedShares or null if they could
+     *                      not be reconstructed
+     */
+    public void deliverBlindedData(int from, Share[] blindedShares, ChunkedData serializedCommonState,
+                                   byte[] commonStateHash, Commitment[] commitments, byte[] commitmentsHash) {
         lock.lock();
         logger.debug("Received blinded data from {}", from);
         int commonStateHashCode = Arrays.hashCode(commonStateHash);
@@ -107,7 +112,7 @@ public abstract class BlindedStateHandler extends Thread {
             selectedCommonState = serializedCommonState;
             selectedCommonStateHash = commonStateHashCode;
             logger.debug("Replica {} sent me a common state of {} bytes", from,
-                    serializedCommonState == null ? "null" : serializedCommonState.length);
+                    serializedCommonState == null ? "null" : serializedCommonState.length());
         } else {
             logger.debug("Replica {} sent me common state hash", from);
         }
@@ -118,7 +123,6 @@ public abstract class BlindedStateHandler extends Thread {
 
         nCommonStateReceived++;
 
-        Share[] blindedShares = reconstructBlindedShares(from, shares);
         if (blindedShares == null) {
             logger.warn("Failed to reconstruct blinded shares from {}", from);
         } else {
@@ -130,6 +134,10 @@ public abstract class BlindedStateHandler extends Thread {
         lock.unlock();
     }
 
+    /**
+     * Reconstructs a chunk of blinded shares received from a server. Called by the receiver while the shares are
+     * being received.
+     */
     protected abstract Share[] reconstructBlindedShares(int from, byte[][] shares);
 
     protected abstract LinkedList<VerifiableShare> reconstructShares(int nShares,
@@ -210,7 +218,7 @@ public abstract class BlindedStateHandler extends Thread {
                 allBlindedCommitments);
     }
 
-    private boolean haveCorrectState(byte[] selectedState, Map<Integer, Integer> states,
+    private boolean haveCorrectState(ChunkedData selectedState, Map<Integer, Integer> states,
                                      int selectedStateHash) {
         if (selectedState == null)
             return false;
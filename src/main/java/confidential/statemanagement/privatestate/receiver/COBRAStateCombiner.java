@@ -6,15 +6,14 @@ import bftsmart.tom.core.messages.TOMMessage;
 import bftsmart.tom.core.messages.TOMMessageType;
 import bftsmart.tom.server.defaultservices.CommandsInfo;
 import bftsmart.tom.server.defaultservices.DefaultApplicationState;
-import bftsmart.tom.util.TOMUtil;
 import confidential.server.Request;
 import confidential.statemanagement.ConfidentialSnapshot;
 import confidential.statemanagement.ReconstructionCompleted;
+import confidential.statemanagement.utils.ChunkedData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import vss.secretsharing.VerifiableShare;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
@@ -29,11 +28,11 @@ import java.util.Set;
 public class COBRAStateCombiner extends Thread {
 	private final Logger logger = LoggerFactory.getLogger("state_transfer");
 	private final int pid;
-	private final byte[] commonState;
+	private final ChunkedData commonState;
 	private final LinkedList<VerifiableShare> shares;
 	private final ReconstructionCompleted reconstructionListener;
 
-	public COBRAStateCombiner(int pid, byte[] commonState, LinkedList<VerifiableShare> shares,
+	public COBRAStateCombiner(int pid, ChunkedData commonState, LinkedList<VerifiableShare> shares,
 							  ReconstructionCompleted reconstructionListener) {
 		this.pid = pid;
 		this.commonState = commonState;
@@ -43,7 +42,7 @@ public class COBRAStateCombiner extends Thread {
 
 	@Override
 	public void run() {
-		try (ObjectInputStream commonStateStream = new ObjectInputStream(new ByteArrayInputStream(commonState))) {
+		try (ObjectInputStream commonStateStream = new ObjectInputStream(commonState.newInputStream())) {
 			logger.debug("Combining states");
 			long startTime = System.nanoTime();
 			DefaultApplicationState reconstructedState = reconstructState(commonStateStream);
@@ -88,13 +87,27 @@ public class COBRAStateCombiner extends Thread {
 				lastCheckPointCID,
 				lastCID,
 				reconstructedSerializedState,
-				reconstructedSerializedState == null ? null : TOMUtil.computeHash(reconstructedSerializedState),
+				reconstructedSnapshot == null ? null : reconstructedSnapshot.computeHash(),
 				pid
 		);
 	}
 
 	private ConfidentialSnapshot reconstructSnapshot(ObjectInputStream commonStateStream, Iterator<VerifiableShare> reconstructedShares) throws IOException {
 		logger.debug("Reconstructing snapshot");
+		ConfidentialSnapshot snapshot = reconstructSnapshotData(commonStateStream, reconstructedShares);
+		int nDeltas = commonStateStream.readInt();
+		if (nDeltas > -1) {
+			ConfidentialSnapshot[] deltas = new ConfidentialSnapshot[nDeltas];
+			for (int i = 0; i < nDeltas; i++) {
+				deltas[i] = reconstructSnapshotData(commonStateStream, reconstructedShares);
+			}
+			snapshot = snapshot.withDeltas(deltas);
+		}
+		return snapshot;
+	}
+
+	private ConfidentialSnapshot reconstructSnapshotData(ObjectInputStream commonStateStream,
+														 Iterator<VerifiableShare> reconstructedShares) throws IOException {
 		int plainDataSize = commonStateStream.readInt();
 		byte[] plainData = null;
 		if (plainDataSize > -1) {
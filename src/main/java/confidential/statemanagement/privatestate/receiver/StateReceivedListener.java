@@ -1,5 +1,6 @@
 package confidential.statemanagement.privatestate.receiver;
 
+import confidential.statemanagement.utils.ChunkedData;
 import vss.secretsharing.VerifiableShare;
 
 import java.util.LinkedList;
@@ -8,5 +9,5 @@ import java.util.LinkedList;
  * @author robin
  */
 public interface StateReceivedListener {
-	void onStateReceived(byte[] commonState, LinkedList<VerifiableShare> shares);
+	void onStateReceived(ChunkedData commonState, LinkedList<VerifiableShare> shares);
 }
@@ -1,37 +1,49 @@
 package confidential.statemanagement.privatestate.sender;
 
+import bftsmart.tom.util.TOMUtil;
+import confidential.BufferObjectOutput;
 import confidential.Configuration;
-import confidential.statemanagement.utils.HashThread;
+import confidential.statemanagement.privatestate.BlindedDataFrame;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import vss.commitment.Commitment;
 import vss.commitment.CommitmentUtils;
 
 import javax.net.SocketFactory;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.net.ConnectException;
 import java.net.Socket;
 import java.net.SocketException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Sends the common state and the blinded shares to a receiver while they are being produced, using the frames
+ * described in BlindedDataFrame. At most MAX_PENDING_COMMON_STATE_CHUNKS chunks of common state and
+ * MAX_PENDING_SHARE_CHUNKS chunks of blinded shares wait to be sent, therefore separation and blinding are slowed
+ * down to the speed of the connection.
+ */
 public class BlindedDataSender extends Thread {
+    private static final int MAX_PENDING_COMMON_STATE_CHUNKS = 8;
+    private static final int MAX_PENDING_SHARE_CHUNKS = 8;
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] END_OF_COMMON_STATE = new byte[0];
+    private static final BlindedShares END_OF_BLINDED_SHARES = new BlindedShares(null, null);
     private final Logger logger = LoggerFactory.getLogger("state_transfer");
     private final int pid;
     private final String receiverServersIp;
     private final int receiverServerPort;
     private final boolean iAmStateSender;
     private Socket connection;
-    private final Lock lock;
-    private final Condition waitingSharesCondition;
-    private final Condition waitingCommonStateCondition;
-    private BlindedShares blindedShares;
-    private byte[] commonState;
-    private byte[] commonStateHash;
+    // chunks of common state followed by END_OF_COMMON_STATE, or the common state hash if I am not the state sender
+    private final BlockingQueue<byte[]> commonState;
+    private final BlockingQueue<BlindedShares> blindedShares;
+    private volatile boolean running;
     private final CommitmentUtils commitmentUtils;
 
     public BlindedDataSender(int pid, String receiverServersIp, int receiverServerPort, boolean iAmStateSender) {
@@ -40,38 +52,52 @@ public class BlindedDataSender extends Thread {
         this.receiverServersIp = receiverServersIp;
         this.receiverServerPort = receiverServerPort;
         this.iAmStateSender = iAmStateSender;
-        this.lock = new ReentrantLock(true);
-        this.waitingSharesCondition = lock.newCondition();
-        this.waitingCommonStateCondition = lock.newCondition();
+        this.commonState = new LinkedBlockingQueue<>(MAX_PENDING_COMMON_STATE_CHUNKS);
+        this.blindedShares = new LinkedBlockingQueue<>(MAX_PENDING_SHARE_CHUNKS);
+        this.running = true;
         this.commitmentUtils = CommitmentUtils.getInstance();
     }
 
-    public void setBlindedShares(BlindedShares blindedShares) {
-        lock.lock();
-        this.blindedShares = blindedShares;
-        waitingSharesCondition.signal();
-        lock.unlock();
+    /**
+     * Waits until there is space for the chunk of common state. The chunk is discarded if this sender has stopped.
+     */
+    public void addCommonStateChunk(byte[] chunk) {
+        try {
+            while (running) {
+                if (commonState.offer(chunk, 100, TimeUnit.MILLISECONDS))
+                    return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    public void setCommonState(byte[] commonState, byte[] commonStateHash) {
-        lock.lock();
-        this.commonState = commonState;
-        this.commonStateHash = commonStateHash;
-        waitingCommonStateCondition.signal();
-        lock.unlock();
+    /**
+     * Ends the common state
+     * @param commonStateHash Hash of the common state if I am not the state sender, otherwise null
+     */
+    public void finishCommonState(byte[] commonStateHash) {
+        addCommonStateChunk(iAmStateSender ? END_OF_COMMON_STATE : commonStateHash);
+    }
+
+    /**
+     * Waits until there is space for the chunk of blinded shares. The chunk is discarded if this sender has stopped.
+     */
+    public void addBlindedShares(BlindedShares blindedSharesChunk) throws InterruptedException {
+        while (running) {
+            if (blindedShares.offer(blindedSharesChunk, 100, TimeUnit.MILLISECONDS))
+                return;
+        }
+    }
+
+    public void finishBlindedShares() throws InterruptedException {
+        addBlindedShares(END_OF_BLINDED_SHARES);
     }
 
     @Override
     public void run() {
         boolean usingLinearScheme = Configuration.getInstance().getVssScheme().equals("1");
         try {
-            //Waiting for common state
-            lock.lock();
-            if (commonState == null && commonStateHash == null) {
-                waitingCommonStateCondition.await();
-            }
-            lock.unlock();
-
             //connecting
             logger.debug("Connecting to {}:{}", receiverServersIp, receiverServerPort);
             int counter = 3;
@@ -88,92 +114,69 @@ public class BlindedDataSender extends Thread {
                 logger.warn("I could not connect to {}:{}", receiverServersIp, receiverServerPort);
                 return;
             }
-            try (ObjectOutput out = new ObjectOutputStream(connection.getOutputStream())) {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(),
+                    OUTPUT_BUFFER_SIZE))) {
                 connection.setKeepAlive(true);
                 connection.setTcpNoDelay(true);
-                out.writeInt(pid);
+                writeFrame(out, BlindedDataFrame.SENDER, confidential.Utils.toBytes(pid));
                 //Sending common state
                 if (iAmStateSender) {
-                    logger.debug("Sending {} bytes of common state", commonState.length);
-                    out.write(0); //sending full state
-                    out.writeInt(commonState.length);
-                    out.write(commonState);
+                    long totalBytes = 0;
+                    byte[] chunk;
+                    while ((chunk = commonState.take()) != END_OF_COMMON_STATE) {
+                        writeFrame(out, BlindedDataFrame.COMMON_STATE_CHUNK, chunk);
+                        totalBytes += chunk.length;
+                    }
+                    writeFrame(out, BlindedDataFrame.COMMON_STATE_END, END_OF_COMMON_STATE);
+                    logger.debug("Sent {} bytes of common state", totalBytes);
                 } else {
                     logger.debug("Sending common state hash");
-                    out.write(1); //sending hash
-                    out.writeInt(commonStateHash.length);
-                    out.write(commonStateHash);
+                    writeFrame(out, BlindedDataFrame.COMMON_STATE_HASH, commonState.take());
                 }
                 out.flush();
                 logger.debug("Sent common state");
 
-                //Waiting for blinded shares
-                lock.lock();
-                if (blindedShares == null) {
-                    waitingSharesCondition.await();
-                }
-                lock.unlock();
-                logger.debug("Received blinded shares");
-                //Computing commitments hash
-                HashThread commitmentsHashThread = null;
-                Commitment[] commitments = blindedShares.getCommitment();
-                if (usingLinearScheme) {
-                    if (iAmStateSender) {
-                        logger.debug("Sending {} commitments", commitments.length);
-                        out.write(0);//3 - sending commitments first
-                        out.writeInt(commitments.length);
-                        for (Commitment commitment : commitments) {
-                            commitmentUtils.writeCommitment(commitment, out);
-                        }
-                        out.flush();
-                    } else {
-                        out.write(1);//3 - not sending commitments first
-                        int totalCommitmentsArraySize = 4 * commitments.length;
-                        byte[] commitmentsHashArray = new byte[totalCommitmentsArraySize];
-                        commitmentsHashThread = new HashThread();
-                        commitmentsHashThread.setData(commitmentsHashArray);
-                        commitmentsHashThread.start();
-
-                        int index = 0;
-                        byte[] b;
-                        for (Commitment commitment : commitments) {
-                            b = confidential.Utils.toBytes(commitment.consistentHash());
-                            for (byte value : b) {
-                                commitmentsHashArray[index++] = value;
+                //Sending blinded shares with their commitments or hash of commitments
+                boolean sendingCommitments = !usingLinearScheme || iAmStateSender;
+                MessageDigest commitmentsDigest = sendingCommitments ? null : TOMUtil.getHashEngine();
+                long totalShares = 0;
+                long totalBytes = 0;
+                BlindedShares chunk;
+                while ((chunk = blindedShares.take()) != END_OF_BLINDED_SHARES) {
+                    byte[][] shares = chunk.getShare();
+                    Commitment[] commitments = chunk.getCommitment();
+                    byte[] serializedChunk;
+                    try (BufferObjectOutput chunkOut = BufferObjectOutput.acquire()) {
+                        chunkOut.writeInt(shares.length);
+                        if (sendingCommitments) {
+                            chunkOut.writeInt(commitments.length);
+                            for (Commitment commitment : commitments) {
+                                commitmentUtils.writeCommitment(commitment, chunkOut);
+                            }
+                        } else {
+                            chunkOut.writeInt(-1);
+                            for (Commitment commitment : commitments) {
+                                commitmentsDigest.update(confidential.Utils.toBytes(commitment.consistentHash()));
                             }
-                            commitmentsHashThread.update(index - 4, 4);
                         }
+                        for (byte[] blindedShare : shares) {
+                            chunkOut.writeInt(blindedShare.length);
+                            chunkOut.write(blindedShare);
+                            totalBytes += blindedShare.length;
+                        }
+                        serializedChunk = chunkOut.toByteArray();
                     }
-                } else {
-                    logger.debug("Sending {} commitments", commitments.length);
-                    out.writeInt(commitments.length);
-                    for (Commitment commitment : commitments) {
-                        commitmentUtils.writeCommitment(commitment, out);
-                    }
-                    out.flush();
+                    writeFrame(out, BlindedDataFrame.BLINDED_SHARES, serializedChunk);
+                    totalShares += shares.length;
                 }
+                logger.debug("Sent {} bytes of {} blinded shares", totalBytes, totalShares);
 
-                //Sending blinded shares
-                long totalBytes = 0;
-                byte[][] shares = blindedShares.getShare();
-                logger.debug("Sending {} blinded shares", shares.length);
-                out.writeInt(shares.length);
-                for (byte[] blindedShare : shares) {
-                    out.writeInt(blindedShare.length);
-                    out.write(blindedShare);
-                    totalBytes += blindedShare.length;
-                }
-                out.flush();
-                logger.debug("Sent {} bytes of blinded shares", totalBytes);
-
-                //Sending commitments
-                if (usingLinearScheme && commitmentsHashThread != null) {
+                //Sending commitments hash
+                if (commitmentsDigest != null) {
                     logger.debug("Sending commitments hash");
-                    commitmentsHashThread.update(-1, -1);
-                    byte[] commitmentsHash = commitmentsHashThread.getHash();
-                    out.writeInt(commitmentsHash.length);
-                    out.write(commitmentsHash);
+                    writeFrame(out, BlindedDataFrame.COMMITMENTS_HASH, commitmentsDigest.digest());
                 }
+                writeFrame(out, BlindedDataFrame.END, END_OF_COMMON_STATE);
                 out.flush();
                 logger.debug("Sent blinded data to {}:{}", receiverServersIp, receiverServerPort);
             }
@@ -184,10 +187,19 @@ public class BlindedDataSender extends Thread {
         } catch (IOException | NoSuchAlgorithmException e) {
             logger.error("Failed to send data to {}:{}", receiverServersIp, receiverServerPort, e);
         } finally {
+            running = false;
+            commonState.clear();
+            blindedShares.clear();
             logger.debug("Exiting blinded data sender for {}:{}", receiverServersIp, receiverServerPort);
         }
     }
 
+    private static void writeFrame(DataOutputStream out, byte type, byte[] payload) throws IOException {
+        out.writeInt(payload.length + 1);
+        out.write(type);
+        out.write(payload);
+    }
+
     public void shutdown() {
         try {
             if (connection != null && connection.isConnected())
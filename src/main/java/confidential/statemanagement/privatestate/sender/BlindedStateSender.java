@@ -1,53 +1,68 @@
 package confidential.statemanagement.privatestate.sender;
 
 import bftsmart.reconfiguration.ServerViewController;
+import bftsmart.tom.util.TOMUtil;
+import confidential.Configuration;
 import confidential.server.ServerConfidentialityScheme;
-import confidential.statemanagement.utils.HashThread;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import vss.commitment.Commitment;
 import vss.secretsharing.Share;
 import vss.secretsharing.VerifiableShare;
 
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Sends the separated state to the receivers. The common state is forwarded to the receivers while the state is
+ * being separated, and the shares are blinded and sent in chunks of SHARES_PER_CHUNK shares once the blinding shares
+ * are received, so neither the common state nor all blinded shares have to be kept in memory.
+ */
 public abstract class BlindedStateSender extends Thread {
+    private static final int SHARES_PER_CHUNK = 1024;
     protected final Logger logger = LoggerFactory.getLogger("state_transfer");
-    private final ServerViewController svController;
-    private final int pid;
-    private final byte[] commonState;
-    private final LinkedList<Share> shares;
-    private final LinkedList<Commitment> commitments;
-    private final int blindedStateReceiverPort;
     protected final ServerConfidentialityScheme confidentialityScheme;
     private final boolean iAmStateSender;
+    private final MessageDigest commonStateDigest;
+    private int nShares;
+    private Iterator<VerifiableShare> shares;
     private VerifiableShare[] blindingShares;
     protected final int[] blindedStateReceivers;
     private final Lock lock;
-    private final Condition waitingBlindingSharesCondition;
-    private BlindedDataSender[] stateSenders;
+    private final Condition waitingSharesCondition;
+    private final BlindedDataSender[] stateSenders;
 
-    public BlindedStateSender(ServerViewController svController, byte[] commonState, LinkedList<Share> shares,
-                              LinkedList<Commitment> commitments, int blindedStateReceiverPort,
+    public BlindedStateSender(ServerViewController svController, int blindedStateReceiverPort,
                               ServerConfidentialityScheme confidentialityScheme,
                               boolean iAmStateSender,
                               int... blindedStateReceivers) {
         super("Blinded State Sender Thread");
-        this.svController = svController;
-        this.pid = svController.getStaticConf().getProcessId();
-        this.commonState = commonState;
-        this.shares = shares;
-        this.commitments = commitments;
-        this.blindedStateReceiverPort = blindedStateReceiverPort;
+        int pid = svController.getStaticConf().getProcessId();
         this.confidentialityScheme = confidentialityScheme;
         this.iAmStateSender = iAmStateSender;
+        try {
+            this.commonStateDigest = iAmStateSender ? null : TOMUtil.getHashEngine();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to create common state hash engine", e);
+        }
         this.blindedStateReceivers = blindedStateReceivers;
         this.lock = new ReentrantLock(true);
-        this.waitingBlindingSharesCondition = lock.newCondition();
+        this.waitingSharesCondition = lock.newCondition();
+        this.stateSenders = new BlindedDataSender[blindedStateReceivers.length];
+        for (int i = 0; i < blindedStateReceivers.length; i++) {
+            int blindedStateReceiver = blindedStateReceivers[i];
+            String receiverIp = svController.getCurrentView().getAddress(blindedStateReceiver)
+                    .getAddress().getHostAddress();
+            int port = blindedStateReceiverPort + blindedStateReceiver;
+            stateSenders[i] = new BlindedDataSender(pid, receiverIp, port, iAmStateSender);
+        }
     }
 
     @Override
@@ -59,83 +74,115 @@ public abstract class BlindedStateSender extends Thread {
         super.interrupt();
     }
 
+    /**
+     * Sends the chunk of common state to the receivers if I am the state sender, otherwise adds it to the common
+     * state hash
+     */
+    public void addCommonStateChunk(byte[] chunk) {
+        if (iAmStateSender) {
+            for (BlindedDataSender stateSender : stateSenders) {
+                stateSender.addCommonStateChunk(chunk);
+            }
+        } else {
+            commonStateDigest.update(chunk);
+        }
+    }
+
+    /**
+     * Ends the common state and sets the shares to be blinded
+     * @param nShares Number of shares
+     * @param shares Shares to be blinded, which are read in chunks while they are being sent
+     */
+    public void setShares(int nShares, Iterator<VerifiableShare> shares) {
+        byte[] commonStateHash = iAmStateSender ? null : commonStateDigest.digest();
+        for (BlindedDataSender stateSender : stateSenders) {
+            stateSender.finishCommonState(commonStateHash);
+        }
+        lock.lock();
+        this.nShares = nShares;
+        this.shares = shares;
+        waitingSharesCondition.signal();
+        lock.unlock();
+    }
+
     public void setBlindingShares(VerifiableShare[] blindingShares) {
         lock.lock();
         this.blindingShares = blindingShares;
-        waitingBlindingSharesCondition.signal();
+        waitingSharesCondition.signal();
         lock.unlock();
     }
 
     @Override
     public void run() {
         logger.debug("Generating Blinded State");
+        for (BlindedDataSender stateSender : stateSenders) {
+            stateSender.start();
+        }
+
+        lock.lock();
         try {
-            long t1, t2, totalElapsed = 0;
-            stateSenders = new BlindedDataSender[blindedStateReceivers.length];
-            for (int i = 0; i < blindedStateReceivers.length; i++) {
-                int blindedStateReceiver = blindedStateReceivers[i];
-                String receiverIp = svController.getCurrentView().getAddress(blindedStateReceiver)
-                        .getAddress().getHostAddress();
-                int port = blindedStateReceiverPort + blindedStateReceiver;
-                BlindedDataSender stateSender = new BlindedDataSender(pid, receiverIp, port, iAmStateSender);
-                stateSender.start();
-                stateSenders[i] = stateSender;
-            }
+            while (shares == null || blindingShares == null)
+                waitingSharesCondition.await();
+        } catch (InterruptedException e) {
+            return;
+        } finally {
+            lock.unlock();
+        }
 
-            HashThread commonStateHashThread = null;
-            if (iAmStateSender) {
-                for (BlindedDataSender stateSender : stateSenders) {
-                    stateSender.setCommonState(commonState, null);
-                }
-            } else {
-                commonStateHashThread = new HashThread();
-                commonStateHashThread.setData(commonState);
-                commonStateHashThread.start();
-                commonStateHashThread.update(0, commonState.length);
-                commonStateHashThread.update(-1, -1);
-            }
-            lock.lock();
-            try {
-                if (blindingShares == null)
-                    waitingBlindingSharesCondition.await();
-            } catch (InterruptedException e) {
-                return;
-            } finally {
-                lock.unlock();
-            }
+        logger.debug("Received blinding shares");
 
-            logger.debug("Received blinding shares");
+        ExecutorService executorService = Executors
+                .newFixedThreadPool(Configuration.getInstance().getShareProcessingThreads());
+        try {
+            long t1, t2, totalElapsed = 0;
+            for (int offset = 0; offset < nShares; offset += SHARES_PER_CHUNK) {
+                int chunkSize = Math.min(SHARES_PER_CHUNK, nShares - offset);
+                Share[] chunkShares = new Share[chunkSize];
+                Commitment[] chunkCommitments = new Commitment[chunkSize];
+                for (int i = 0; i < chunkSize; i++) {
+                    VerifiableShare share = shares.next();
+                    chunkShares[i] = share.getShare();
+                    chunkCommitments[i] = share.getCommitments();
+                }
+                VerifiableShare[] chunkBlindingShares = Arrays.copyOfRange(blindingShares, offset, offset + chunkSize);
 
-            if (commonStateHashThread != null) {
-                byte[] commonStateHash = commonStateHashThread.getHash();
+                t1 = System.nanoTime();
+                BlindedShares blindedShares = computeBlindedShares(chunkShares, chunkCommitments, chunkBlindingShares,
+                        executorService);
+                t2 = System.nanoTime();
+                totalElapsed += t2 - t1;
+                if (blindedShares == null) {
+                    logger.error("Blinded shares are null. Exiting blinded state sender thread.");
+                    return;
+                }
                 for (BlindedDataSender stateSender : stateSenders) {
-                    stateSender.setCommonState(null, commonStateHash);
+                    stateSender.addBlindedShares(blindedShares);
                 }
             }
-
-            t1 = System.nanoTime();
-            BlindedShares blindedShares = computeBlindedShares(shares, commitments, blindingShares);
-            t2 = System.nanoTime();
-            blindingShares = null;
-            totalElapsed += t2 - t1;
-            double total = totalElapsed / 1_000_000.0;
-            if (blindedShares == null) {
-                logger.error("Blinded shares are null. Exiting blinded state sender thread.");
-                return;
-            }
-            logger.info("Took {} ms to compute blinded shares [{} shares]", total, blindedShares.getShare().length);
-
             for (BlindedDataSender stateSender : stateSenders) {
-                stateSender.setBlindedShares(blindedShares);
+                stateSender.finishBlindedShares();
             }
-
-        } catch (NoSuchAlgorithmException e) {
-            logger.error("Failed to create hash thread.", e);
+            double total = totalElapsed / 1_000_000.0;
+            logger.info("Took {} ms to compute blinded shares [{} shares]", total, nShares);
+        } catch (InterruptedException ignored) {
+        } finally {
+            executorService.shutdown();
+            shares = null;
+            blindingShares = null;
         }
 
         logger.debug("Existing blinded state sender thread");
     }
 
-    protected abstract BlindedShares computeBlindedShares(LinkedList<Share> shares, LinkedList<Commitment> commitments,
-                                                            VerifiableShare[] blindingShares);
+    /**
+     * Blinds a chunk of shares
+     * @param shares Shares of the chunk
+     * @param commitments Commitments of the shares
+     * @param blindingShares Blinding share of each share
+     * @param executorService Executor to blind the shares in parallel
+     * @return Blinded shares and their commitments
+     */
+    protected abstract BlindedShares computeBlindedShares(Share[] shares, Commitment[] commitments,
+                                                          VerifiableShare[] blindingShares,
+                                                          ExecutorService executorService);
 }
@@ -7,25 +7,27 @@ import bftsmart.tom.server.defaultservices.CommandsInfo;
 import bftsmart.tom.server.defaultservices.DefaultApplicationState;
 import confidential.server.Request;
 import confidential.statemanagement.ConfidentialSnapshot;
+import confidential.statemanagement.utils.ChunkedOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import vss.commitment.Commitment;
-import vss.secretsharing.Share;
 import vss.secretsharing.VerifiableShare;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
+ * Separates the state into the common state, which is streamed to the listener in chunks of fixed size, and the
+ * shares, which are blinded before being sent. The shares are not copied: the listener iterates over the share
+ * arrays of the snapshot, its deltas and the logged requests.
  * @author robin
  */
 public class COBRAStateSeparator extends Thread {
+	private static final int COMMON_STATE_CHUNK_SIZE = 1024 * 1024;
 	private final Logger logger = LoggerFactory.getLogger("state_transfer");
 	private final DefaultApplicationState applicationState;
 	private final StateSeparationListener separationListener;
@@ -40,23 +42,25 @@ public class COBRAStateSeparator extends Thread {
 	public void run() {
 		long t1, t2;
 		t1 = System.nanoTime();
-		SeparatedState separatedState = separatePrivateState(applicationState);
+		boolean separated = separatePrivateState(applicationState);
 		t2 = System.nanoTime();
-		if (separatedState == null) {
-			logger.error("Separated state is null. Exiting blinded state sender thread.");
+		if (!separated) {
+			logger.error("Failed to separate state. Exiting blinded state sender thread.");
 			return;
 		}
 		double elapsed = (t2 - t1) / 1_000_000.0;
 		logger.info("Took {} ms to separate state", elapsed);
-		separationListener.onSeparation(separatedState.getCommonState(), separatedState.getShares(), separatedState.getCommitments());
 	}
 
-	private SeparatedState separatePrivateState(DefaultApplicationState state) {
-		try (ByteArrayOutputStream bosCommonState = new ByteArrayOutputStream();
-			 ObjectOutput outCommonState = new ObjectOutputStream(bosCommonState)) {
-			LinkedList<Share> sharesToSend = new LinkedList<>();
-			LinkedList<Commitment> commitmentsToSend = new LinkedList<>();
-
+	/**
+	 * Writes the common state in chunks, which are handed to the listener while the state is being separated, and
+	 * collects the arrays of shares in the order they appear in the common state
+	 * @return False if the state could not be separated
+	 */
+	private boolean separatePrivateState(DefaultApplicationState state) {
+		List<VerifiableShare[]> sharesToSend = new ArrayList<>();
+		try (ObjectOutput outCommonState = new ObjectOutputStream(new ChunkedOutputStream(COMMON_STATE_CHUNK_SIZE,
+				separationListener::onCommonStateChunk))) {
 			CommandsInfo[] log = state.getMessageBatches();
 			outCommonState.writeInt(state.getLastCheckpointCID());
 			outCommonState.writeInt(state.getLastCID());
@@ -64,7 +68,7 @@ public class COBRAStateSeparator extends Thread {
 			outCommonState.writeInt(log == null ? -1 : log.length);
 
 			if (log != null) {
-				separateLog(log, outCommonState, sharesToSend, commitmentsToSend);
+				separateLog(log, outCommonState, sharesToSend);
 			}
 
 			ConfidentialSnapshot snapshot = null;
@@ -74,40 +78,51 @@ public class COBRAStateSeparator extends Thread {
 
 			if (snapshot != null) {
 				outCommonState.writeBoolean(true);
-				separateSnapshot(snapshot, outCommonState, sharesToSend, commitmentsToSend);
+				separateSnapshot(snapshot, outCommonState, sharesToSend);
 			} else {
 				outCommonState.writeBoolean(false);
 			}
 
 			outCommonState.flush();
-			bosCommonState.flush();
-
-			byte[] commonStateBytes = bosCommonState.toByteArray();
-			return new SeparatedState(
-					commonStateBytes,
-					sharesToSend,
-					commitmentsToSend
-			);
 		} catch (IOException e) {
 			logger.error("Failed to create separate private state", e);
-			return null;
+			return false;
+		}
+		int nShares = 0;
+		for (VerifiableShare[] shares : sharesToSend) {
+			nShares += shares.length;
 		}
+		separationListener.onSeparation(nShares, sharesToSend.stream().flatMap(Arrays::stream).iterator());
+		return true;
 	}
 
 	private void separateSnapshot(ConfidentialSnapshot snapshot, ObjectOutput outCommonState,
-								  LinkedList<Share> sharesToSend, LinkedList<Commitment> commitmentsToSend) throws IOException {
+								  List<VerifiableShare[]> sharesToSend) throws IOException {
+		separateSnapshotData(snapshot, outCommonState, sharesToSend);
+		if (snapshot.getDeltas() != null) {
+			outCommonState.writeInt(snapshot.getDeltas().length);
+			for (ConfidentialSnapshot delta : snapshot.getDeltas()) {
+				separateSnapshotData(delta, outCommonState, sharesToSend);
+			}
+		} else {
+			outCommonState.writeInt(-1);
+		}
+	}
+
+	private void separateSnapshotData(ConfidentialSnapshot snapshot, ObjectOutput outCommonState,
+									  List<VerifiableShare[]> sharesToSend) throws IOException {
 		outCommonState.writeInt(snapshot.getPlainData() == null ? -1 : snapshot.getPlainData().length);
 		if (snapshot.getPlainData() != null) {
 			outCommonState.write(snapshot.getPlainData());
 		}
 		outCommonState.writeInt(snapshot.getShares() == null ? -1 : snapshot.getShares().length);
 		if (snapshot.getShares() != null) {
-			separateShares(snapshot.getShares(), outCommonState, sharesToSend, commitmentsToSend);
+			separateShares(snapshot.getShares(), outCommonState, sharesToSend);
 		}
 	}
 
-	private void separateLog(CommandsInfo[] log, ObjectOutput outCommonState, LinkedList<Share> sharesToSend,
-							 LinkedList<Commitment> commitmentsToSend) throws IOException {
+	private void separateLog(CommandsInfo[] log, ObjectOutput outCommonState, List<VerifiableShare[]> sharesToSend)
+			throws IOException {
 		byte[] b;
 		for (CommandsInfo commandsInfo : log) {
 			byte[][] commands = commandsInfo.commands;
@@ -122,7 +137,7 @@ public class COBRAStateSeparator extends Thread {
 					outCommonState.write(command);
 				} else {
 					outCommonState.writeInt(request.getShares().length);
-					separateShares(request.getShares(), outCommonState, sharesToSend, commitmentsToSend);
+					separateShares(request.getShares(), outCommonState, sharesToSend);
 					request.setShares(null);
 					b = request.serialize();
 					if (b == null) {
@@ -137,7 +152,7 @@ public class COBRAStateSeparator extends Thread {
 	}
 
 	private void separateShares(VerifiableShare[] shares, ObjectOutput outCommonState,
-								LinkedList<Share> sharesToSend, LinkedList<Commitment> commitmentsToSend) throws IOException {
+								List<VerifiableShare[]> sharesToSend) throws IOException {
 		byte[] b;
 		for (VerifiableShare share : shares) {
 			b = share.getSharedData();
@@ -145,9 +160,8 @@ public class COBRAStateSeparator extends Thread {
 			if (b != null) {
 				outCommonState.write(b);
 			}
-			sharesToSend.add(share.getShare());
-			commitmentsToSend.add(share.getCommitments());
 		}
+		sharesToSend.add(shares);
 	}
 
 	private void serializeMessageContext(ObjectOutput out, MessageContext[] msgCtx) throws IOException {
@@ -1,10 +1,20 @@
 package confidential.statemanagement.privatestate.sender;
 
-import vss.commitment.Commitment;
-import vss.secretsharing.Share;
+import vss.secretsharing.VerifiableShare;
 
-import java.util.LinkedList;
+import java.util.Iterator;
 
 public interface StateSeparationListener {
-    void onSeparation(byte[] commonState, LinkedList<Share> shares, LinkedList<Commitment> commitments);
-}
\ No newline at end of file
+    /**
+     * Called in order for each chunk of the common state while the state is being separated
+     * @param chunk Chunk of the serialized common state. Must not be modified.
+     */
+    void onCommonStateChunk(byte[] chunk);
+
+    /**
+     * Called after the last chunk of the common state
+     * @param nShares Number of shares
+     * @param shares Shares in the order they appear in the common state, read from the state being sent
+     */
+    void onSeparation(int nShares, Iterator<VerifiableShare> shares);
+}
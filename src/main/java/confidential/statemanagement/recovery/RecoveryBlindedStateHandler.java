@@ -16,6 +16,7 @@ import java.util.*;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class RecoveryBlindedStateHandler extends BlindedStateHandler {
 
@@ -56,6 +57,9 @@ public class RecoveryBlindedStateHandler extends BlindedStateHandler {
             shareholders[k++] = shareholder;
         }
 
+        AtomicReference<RecoveringServers> recoveringServers =
+                new AtomicReference<>(selectRecoveringServers(servers));
+
         for (int i = 0; i < nShares; i++) {
             Map<Integer, Share> blindedShares = new HashMap<>(stillValidSenders.size());
             Map<BigInteger, Commitment> commitments = new HashMap<>(stillValidSenders.size());
@@ -71,11 +75,13 @@ public class RecoveryBlindedStateHandler extends BlindedStateHandler {
 
             int finalI = i;
             executorService.execute(() -> {
-                VerifiableShare recoveredShare = recoverShare(blindedShares, commitments, blindingCommitments);
-                if (recoveredShare == null)
-                    return;
-                recoveredShares[finalI] = recoveredShare;
-                latch.countDown();
+                try {
+                    recoveredShares[finalI] = recoverShare(blindedShares, commitments, blindingCommitments,
+                            servers, recoveringServers);
+                } finally {
+                    // a share that could not be recovered is left null, which fails the whole recovery
+                    latch.countDown();
+                }
             });
         }
 
@@ -94,41 +100,106 @@ public class RecoveryBlindedStateHandler extends BlindedStateHandler {
         return result;
     }
 
+    /**
+     * Selects the first f + 2 servers still considered valid, or f + 1 if f servers are already known to be
+     * corrupted
+     * @return Recovering servers or null if there are not enough valid servers
+     */
+    private RecoveringServers selectRecoveringServers(Integer[] servers) {
+        int nRecoveringServers = f + (corruptedServers.get() < f ? 2 : 1);
+        List<Integer> validServers = new ArrayList<>(servers.length);
+        for (Integer server : servers) {
+            if (stillValidSenders.contains(server))
+                validServers.add(server);
+        }
+        if (validServers.size() < nRecoveringServers)
+            return null;
+        return new RecoveringServers(validServers.subList(0, nRecoveringServers).toArray(new Integer[0]));
+    }
+
+    /**
+     * Marks a server as corrupted. Corrupted servers are counted only once, even if several shares are found invalid.
+     */
+    private void removeCorruptedServer(int server) {
+        if (stillValidSenders.remove(server))
+            this.corruptedServers.incrementAndGet();
+    }
+
+    /**
+     * Selects new recovering servers if any of the current ones is corrupted
+     */
+    private void excludeFromRecoveringServers(Set<Integer> corruptedServers, Integer[] allServers,
+                                              AtomicReference<RecoveringServers> currentRecoveringServers) {
+        if (corruptedServers.isEmpty())
+            return;
+        currentRecoveringServers.updateAndGet(current -> current == null || current.containsAny(corruptedServers)
+                ? selectRecoveringServers(allServers) : current);
+    }
+
+    /**
+     * Recovers a share. If the shares of the recovering servers lie on a polynomial of degree f, the share is
+     * computed using their pre-computed Lagrange weights, otherwise all shares are verified using the commitments.
+     * Servers found corrupted are removed from the recovering servers, so the following shares can be computed
+     * using the Lagrange weights again.
+     */
     private VerifiableShare recoverShare(Map<Integer, Share> blindedShares, Map<BigInteger, Commitment> commitments,
-                                         Map<BigInteger, Commitment> blindingCommitments) {
+                                         Map<BigInteger, Commitment> blindingCommitments, Integer[] allServers,
+                                         AtomicReference<RecoveringServers> currentRecoveringServers) {
         try {
+            // ignoring servers found corrupted while recovering previous shares
+            Iterator<Integer> blindedSharesIterator = blindedShares.keySet().iterator();
+            while (blindedSharesIterator.hasNext()) {
+                int server = blindedSharesIterator.next();
+                if (!stillValidSenders.contains(server)) {
+                    blindedSharesIterator.remove();
+                    BigInteger shareholder = confidentialityScheme.getShareholder(server);
+                    commitments.remove(shareholder);
+                    blindingCommitments.remove(shareholder);
+                }
+            }
+            RecoveringServers recoveringServers = currentRecoveringServers.get();
+            // the recovering servers may have been selected before a server removed above was found corrupted
+            if (recoveringServers != null && !recoveringServers.containedIn(blindedShares.keySet()))
+                recoveringServers = selectRecoveringServers(blindedShares.keySet().toArray(new Integer[0]));
             int corruptedServers = this.corruptedServers.get();
-            Share[] recoveringShares = new Share[f + (corruptedServers < f ? 2 : 1)];
-            int j = 0;
-            if (blindedShares.size() < recoveringShares.length)
+            int nRecoveringShares = f + (corruptedServers < f ? 2 : 1);
+            if (blindedShares.size() < nRecoveringShares || recoveringServers == null)
                 throw new SecretSharingException("Not enough blinded shares to recovery a share ("
-                        + blindedShares.size() + " < " + recoveringShares.length + ")");
-            for (Map.Entry<Integer, Share> entry : blindedShares.entrySet()) {
-                Share share = entry.getValue();
-                if (j < recoveringShares.length) {
-                    recoveringShares[j++] = share;
-                }
+                        + blindedShares.size() + " < " + nRecoveringShares + ")");
+            Share[] recoveringShares = new Share[recoveringServers.servers.length];
+            BigInteger[] recoveringValues = new BigInteger[recoveringShares.length];
+            for (int j = 0; j < recoveringShares.length; j++) {
+                recoveringShares[j] = blindedShares.get(recoveringServers.servers[j]);
+                recoveringValues[j] = recoveringShares[j].getShare();
             }
 
-            Polynomial polynomial = new Polynomial(field, recoveringShares);
-
             BigInteger shareNumber;
             Map<BigInteger, Commitment> validCommitments;
 
-            if (polynomial.getDegree() != f) {
+            if (!recoveringServers.haveDegreeF(recoveringValues)) {
                 recoveringShares = new Share[f + 1];
                 validCommitments = new HashMap<>(f);
                 Commitment combinedCommitments = commitmentScheme.combineCommitments(commitments);
                 Commitment combinedBlindingCommitments = commitmentScheme.combineCommitments(blindingCommitments);
                 Commitment verificationCommitments = commitmentScheme.sumCommitments(combinedCommitments,
                         combinedBlindingCommitments);
-                j = 0;
+                int j = 0;
                 Set<Integer> invalidSenders = new HashSet<>(f);
+                int[] servers = new int[blindedShares.size()];
+                Share[] sharesToVerify = new Share[blindedShares.size()];
+                Commitment[] commitmentsToVerify = new Commitment[blindedShares.size()];
+                int k = 0;
                 for (Map.Entry<Integer, Share> entry : blindedShares.entrySet()) {
-                    int server = entry.getKey();
+                    servers[k] = entry.getKey();
+                    sharesToVerify[k] = entry.getValue();
+                    commitmentsToVerify[k++] = verificationCommitments;
+                }
+                boolean[] validShares = commitmentScheme.checkValidityBatch(sharesToVerify, commitmentsToVerify);
+                for (k = 0; k < servers.length; k++) {
+                    int server = servers[k];
                     BigInteger shareholder = confidentialityScheme.getShareholder(server);
-                    if (commitmentScheme.checkValidityWithoutPreComputation(entry.getValue(), verificationCommitments)) {
-                        recoveringShares[j++] = entry.getValue();
+                    if (validShares[k]) {
+                        recoveringShares[j++] = sharesToVerify[k];
                         if (validCommitments.size() <= f) {
                             validCommitments.put(shareholder, commitments.get(shareholder));
                         }
@@ -136,18 +207,19 @@ public class RecoveryBlindedStateHandler extends BlindedStateHandler {
                         logger.error("Server {} sent me invalid share", server);
                         commitments.remove(shareholder);
                         blindingCommitments.remove(shareholder);
-                        this.corruptedServers.incrementAndGet();
                         invalidSenders.add(server);
-                        stillValidSenders.remove(server);
+                        removeCorruptedServer(server);
                     }
                 }
                 for (Integer server : invalidSenders) {
                     blindedShares.remove(server);
                 }
+                excludeFromRecoveringServers(invalidSenders, allServers, currentRecoveringServers);
 
                 shareNumber = interpolationStrategy.interpolateAt(shareholderId, recoveringShares);
             } else {
-                shareNumber = polynomial.evaluateAt(shareholderId);
+                shareNumber = interpolationStrategy.interpolateAt(shareholderId, recoveringServers.shareholders,
+                        recoveringValues)[0];
                 int minNumberOfCommitments = corruptedServers >= f ? f : f + 1;
                 validCommitments = new HashMap<>(minNumberOfCommitments);
 
@@ -168,6 +240,7 @@ public class RecoveryBlindedStateHandler extends BlindedStateHandler {
                 Commitment verificationCommitments = commitmentScheme.sumCommitments(combinedCommitments,
                         combinedBlindingCommitments);
                 validCommitments.clear();
+                Set<Integer> invalidSenders = new HashSet<>(f);
                 for (Map.Entry<Integer, Share> entry : blindedShares.entrySet()) {
                     int server = entry.getKey();
                     BigInteger shareholder = confidentialityScheme.getShareholder(server);
@@ -178,17 +251,92 @@ public class RecoveryBlindedStateHandler extends BlindedStateHandler {
                         }
                     } else {
                         logger.error("Server {} send me an invalid commitment", server);
-                        stillValidSenders.remove(server);
-                        this.corruptedServers.incrementAndGet();
+                        invalidSenders.add(server);
+                        removeCorruptedServer(server);
                     }
                 }
+                excludeFromRecoveringServers(invalidSenders, allServers, currentRecoveringServers);
                 commitment = commitmentScheme.recoverCommitment(shareholderId, validCommitments);
             }
             Share share = new Share(shareholderId, shareNumber);
             return new VerifiableShare(share, commitment, null);
-        } catch (SecretSharingException e) {
+        } catch (SecretSharingException | RuntimeException e) {
             logger.error("Failed to a recover share", e);
             return null;
         }
     }
+
+    /**
+     * Fixed set of servers whose shares are used to recover all shares, together with the weights that give the two
+     * highest coefficients of the polynomial interpolated from their shares
+     */
+    private final class RecoveringServers {
+        private final Integer[] servers;
+        private final BigInteger[] shareholders;
+        private final BigInteger[] highestCoefficientWeights;
+        private final BigInteger[] secondCoefficientWeights;
+
+        private RecoveringServers(Integer[] servers) {
+            this.servers = servers;
+            int n = servers.length;
+            this.shareholders = new BigInteger[n];
+            BigInteger sum = BigInteger.ZERO;
+            for (int i = 0; i < n; i++) {
+                shareholders[i] = confidentialityScheme.getShareholder(servers[i]);
+                sum = sum.add(shareholders[i]);
+            }
+            BigInteger[] denominators = new BigInteger[n];
+            for (int i = 0; i < n; i++) {
+                BigInteger denominator = BigInteger.ONE;
+                for (int j = 0; j < n; j++) {
+                    if (i != j)
+                        denominator = denominator.multiply(shareholders[i].subtract(shareholders[j])).mod(field);
+                }
+                denominators[i] = denominator;
+            }
+            // prod_(j != i) (X - x_j) = X^(n-1) + (x_i - sum) X^(n-2) + ...
+            this.highestCoefficientWeights = Polynomial.batchInverse(field, denominators);
+            this.secondCoefficientWeights = new BigInteger[n];
+            for (int i = 0; i < n; i++) {
+                secondCoefficientWeights[i] = highestCoefficientWeights[i].multiply(shareholders[i].subtract(sum))
+                        .mod(field);
+            }
+        }
+
+        private boolean containsAny(Set<Integer> servers) {
+            for (Integer server : this.servers) {
+                if (servers.contains(server))
+                    return true;
+            }
+            return false;
+        }
+
+        private boolean containedIn(Set<Integer> servers) {
+            for (Integer server : this.servers) {
+                if (!servers.contains(server))
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Checks if the polynomial interpolated from the shares has degree f
+         * @param shares Share of each server
+         * @return True if the polynomial has degree f
+         */
+        private boolean haveDegreeF(BigInteger[] shares) {
+            if (servers.length == f + 1)
+                return dotProduct(highestCoefficientWeights, shares).signum() != 0;
+            return dotProduct(highestCoefficientWeights, shares).signum() == 0
+                    && dotProduct(secondCoefficientWeights, shares).signum() != 0;
+        }
+
+        private BigInteger dotProduct(BigInteger[] weights, BigInteger[] values) {
+            BigInteger result = BigInteger.ZERO;
+            for (int i = 0; i < weights.length; i++) {
+                result = result.add(weights[i].multiply(values[i]));
+            }
+            return result.mod(field);
+        }
+    }
 }
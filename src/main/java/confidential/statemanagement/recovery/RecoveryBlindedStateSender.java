@@ -1,7 +1,6 @@
 package confidential.statemanagement.recovery;
 
 import bftsmart.reconfiguration.ServerViewController;
-import confidential.Configuration;
 import confidential.server.ServerConfidentialityScheme;
 import confidential.statemanagement.privatestate.sender.BlindedShares;
 import confidential.statemanagement.privatestate.sender.BlindedStateSender;
@@ -10,41 +9,31 @@ import vss.secretsharing.Share;
 import vss.secretsharing.VerifiableShare;
 
 import java.math.BigInteger;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class RecoveryBlindedStateSender extends BlindedStateSender {
 
-    public RecoveryBlindedStateSender(ServerViewController svController, byte[] commonState, LinkedList<Share> shares,
-                                      LinkedList<Commitment> commitments, int blindedStateReceiverPort,
+    public RecoveryBlindedStateSender(ServerViewController svController, int blindedStateReceiverPort,
                                       ServerConfidentialityScheme confidentialityScheme, boolean iAmStateSender,
                                       int... blindedStateReceivers) {
-        super(svController, commonState, shares, commitments, blindedStateReceiverPort, confidentialityScheme, iAmStateSender,
-                blindedStateReceivers);
+        super(svController, blindedStateReceiverPort, confidentialityScheme, iAmStateSender, blindedStateReceivers);
     }
 
     @Override
-    protected BlindedShares computeBlindedShares(LinkedList<Share> shares, LinkedList<Commitment> commitments,
-                                                 VerifiableShare[] blindingShares) {
-        logger.debug("Computing blinded shares");
-        ExecutorService executorService = Executors
-                .newFixedThreadPool(Configuration.getInstance().getShareProcessingThreads());
-        int nShares = shares.size();
+    protected BlindedShares computeBlindedShares(Share[] shares, Commitment[] commitments,
+                                                 VerifiableShare[] blindingShares, ExecutorService executorService) {
+        int nShares = shares.length;
         byte[][] resultingShares = new byte[nShares][];
         Commitment[] resultingCommitments = new Commitment[nShares * 2];
 
-        Iterator<Share> shareIterator = shares.iterator();
-        Iterator<Commitment> commitmentsIterator = commitments.iterator();
         CountDownLatch latch = new CountDownLatch(nShares);
         BigInteger field = confidentialityScheme.getField();
         int recoveringServer = blindedStateReceivers[0];
         for (int i = 0; i < nShares; i++) {
             VerifiableShare blindingShare = blindingShares[i];
-            Share share = shareIterator.next();
-            Commitment commitment = commitmentsIterator.next();
+            Share share = shares[i];
+            Commitment commitment = commitments[i];
             int finalI = i;
             executorService.execute(() -> {
                 int index = finalI * 2;
@@ -62,7 +51,6 @@ public class RecoveryBlindedStateSender extends BlindedStateSender {
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
-        executorService.shutdown();
 
         return new BlindedShares(resultingShares, resultingCommitments);
     }
@@ -0,0 +1,41 @@
+package confidential.statemanagement.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Data received in chunks. The chunks are kept as received, so the data is neither copied into a single array nor
+ * limited to the maximum size of an array.
+ */
+public final class ChunkedData {
+    private final List<byte[]> chunks;
+    private long length;
+
+    public ChunkedData() {
+        this.chunks = new ArrayList<>();
+    }
+
+    public void add(byte[] chunk) {
+        chunks.add(chunk);
+        length += chunk.length;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return Stream reading the chunks in order
+     */
+    public InputStream newInputStream() {
+        List<InputStream> streams = new ArrayList<>(chunks.size());
+        for (byte[] chunk : chunks) {
+            streams.add(new ByteArrayInputStream(chunk));
+        }
+        return new SequenceInputStream(Collections.enumeration(streams));
+    }
+}
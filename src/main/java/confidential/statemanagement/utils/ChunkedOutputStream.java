@@ -0,0 +1,70 @@
+package confidential.statemanagement.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Output stream that splits the written data into chunks of fixed size. Each chunk is handed to the consumer as soon
+ * as it is full, so the data never has to be stored in a single array. The last chunk is handed when the stream is
+ * closed and may be smaller.
+ */
+public final class ChunkedOutputStream extends OutputStream {
+    private final int chunkSize;
+    private final Consumer<byte[]> chunkConsumer;
+    private byte[] chunk;
+    private int position;
+
+    /**
+     * @param chunkSize Size of each chunk in bytes
+     * @param chunkConsumer Receives the chunks in order. The chunks are not modified after being handed.
+     */
+    public ChunkedOutputStream(int chunkSize, Consumer<byte[]> chunkConsumer) {
+        this.chunkSize = chunkSize;
+        this.chunkConsumer = chunkConsumer;
+        this.chunk = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        chunk[position++] = (byte) b;
+        if (position == chunkSize)
+            emitChunk();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, chunkSize - position);
+            System.arraycopy(b, off, chunk, position, n);
+            position += n;
+            off += n;
+            len -= n;
+            if (position == chunkSize)
+                emitChunk();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (chunk == null)
+            return;
+        if (position > 0)
+            chunkConsumer.accept(Arrays.copyOf(chunk, position));
+        chunk = null;
+    }
+
+    private void emitChunk() {
+        chunkConsumer.accept(chunk);
+        chunk = new byte[chunkSize];
+        position = 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (chunk == null)
+            throw new IOException("Stream is closed");
+    }
+}
@@ -74,6 +74,16 @@ public interface CommitmentScheme {
      */
     boolean checkValidityWithoutPreComputation(Share share, Commitment commitment);
 
+    /**
+     * Checks if given shares are valid, where shares[i] is verified against commitments[i], without requiring to
+     * call startVerification. All the shares are verified together and they are only verified one by one if that
+     * combined verification fails
+     * @param shares Shares to verify
+     * @param commitments Commitments of the polynomials
+     * @return Array where position i is true if shares[i] is valid, false otherwise
+     */
+    boolean[] checkValidityBatch(Share[] shares, Commitment[] commitments);
+
     /**
      * Add multiple commitments
      * @param commitments Commitments to add
@@ -20,21 +20,14 @@ import java.util.*;
 public class KateCommitmentScheme implements CommitmentScheme {
     private final Pairing pairing;
     private final BigInteger[] shareholders;
-    private final BigInteger[][] divisors;
+    // Native verification context created by startVerification in each thread
+    private final ThreadLocal<Long> verificationContexts;
 
     public KateCommitmentScheme(int threshold, BigInteger[] shareholders) {
         System.loadLibrary("Pairing");
         this.pairing = new Pairing(threshold);
         this.shareholders = shareholders;
-        this.divisors = new BigInteger[shareholders.length][];
-        for (int i = 0; i < shareholders.length; i++) {
-            BigInteger shareholder = shareholders[i];
-            BigInteger[] divisor = {
-                    BigInteger.ONE,
-                    shareholder.negate()
-            };
-            divisors[i] = divisor;
-        }
+        this.verificationContexts = new ThreadLocal<>();
     }
 
     public BigInteger getPrimeFieldOrder() {
@@ -44,31 +37,18 @@ public class KateCommitmentScheme implements CommitmentScheme {
     @Override
     public Commitment generateCommitments(Polynomial polynomial, BigInteger... additionalShareholders) {
         BigInteger[] coefficients = polynomial.getCoefficients();
-        BigInteger[] c = Arrays.copyOf(coefficients, coefficients.length);
-
-        BigInteger field = pairing.getOrder();
         byte[] commitment = pairing.commitGivenCoefficients(coefficients);
-        TreeMap<Integer, byte[]> witnesses = new TreeMap<>();
-        for (int i = 0; i < shareholders.length; i++) {
-            c[coefficients.length - 1] =
-                    coefficients[coefficients.length - 1].subtract(polynomial
-                    .evaluateAt(shareholders[i]));
-            BigInteger[] w = Polynomial.divide(field, c, divisors[i]);
-            byte[] witness = pairing.createWitnessGivenCoefficients(w);
-            witnesses.put(shareholders[i].hashCode(), witness);
-        }
 
-        for (BigInteger shareholder : additionalShareholders) {
-            c[coefficients.length - 1] =
-                    coefficients[coefficients.length - 1].subtract(polynomial
-                            .evaluateAt(shareholder));
-            BigInteger[] divisor = {
-                    BigInteger.ONE,
-                    shareholder.negate()
-            };
-            BigInteger[] w = Polynomial.divide(field, c, divisor);
-            byte[] witness = pairing.createWitnessGivenCoefficients(w);
-            witnesses.put(shareholder.hashCode(), witness);
+        BigInteger[] allShareholders = shareholders;
+        if (additionalShareholders.length > 0) {
+            allShareholders = Arrays.copyOf(shareholders, shareholders.length + additionalShareholders.length);
+            System.arraycopy(additionalShareholders, 0, allShareholders, shareholders.length,
+                    additionalShareholders.length);
+        }
+        byte[][] allWitnesses = pairing.createWitnessesGivenCoefficients(coefficients, allShareholders);
+        TreeMap<Integer, byte[]> witnesses = new TreeMap<>();
+        for (int i = 0; i < allShareholders.length; i++) {
+            witnesses.put(allShareholders[i].hashCode(), allWitnesses[i]);
         }
         return new ConstantCommitment(commitment, witnesses);
     }
@@ -80,12 +60,17 @@ public class KateCommitmentScheme implements CommitmentScheme {
             commitmentBytes = ((ConstantCommitment)commitment).getCommitment();
         else
             commitmentBytes = ((ShareCommitment)commitment).getCommitment();
-        pairing.startVerification(commitmentBytes);
+        endVerification();
+        verificationContexts.set(pairing.startVerification(commitmentBytes));
     }
 
     @Override
     public void endVerification() {
-        pairing.endVerification();
+        Long verificationContext = verificationContexts.get();
+        if (verificationContext == null)
+            return;
+        verificationContexts.remove();
+        pairing.endVerification(verificationContext);
     }
 
     @Override
@@ -98,14 +83,21 @@ public class KateCommitmentScheme implements CommitmentScheme {
 
     }
 
+    /**
+     * Uses the verification context created by startVerification in the calling thread. If there is none, the share
+     * is verified without pre-computation.
+     */
     @Override
     public boolean checkValidity(Share share, Commitment commitment) {
+        Long verificationContext = verificationContexts.get();
+        if (verificationContext == null)
+            return checkValidityWithoutPreComputation(share, commitment);
         byte[] witness;
         if (commitment instanceof ConstantCommitment)
             witness = ((ConstantCommitment)commitment).getWitness(share.getShareholder());
         else
             witness = ((ShareCommitment)commitment).getWitness();
-        return pairing.verifyShare(share.getShareholder(), share.getShare(), witness);
+        return pairing.verifyShare(verificationContext, share.getShareholder(), share.getShare(), witness);
     }
 
     @Override
@@ -139,6 +131,18 @@ public class KateCommitmentScheme implements CommitmentScheme {
                 witnessBytes);
     }
 
+    /**
+     * Shares are verified one by one, since each verification is already a single pairing check
+     */
+    @Override
+    public boolean[] checkValidityBatch(Share[] shares, Commitment[] commitments) {
+        boolean[] result = new boolean[shares.length];
+        for (int i = 0; i < shares.length; i++) {
+            result[i] = checkValidityWithoutPreComputation(shares[i], commitments[i]);
+        }
+        return result;
+    }
+
     @Override
     public Commitment sumCommitments(Commitment... commitments) throws SecretSharingException {
         CommitmentType type = getCommitmentType(commitments);
@@ -13,8 +13,19 @@ public class Pairing {
     private native void initialize(int threshold);
     private native byte[] getOrderBytes();
 
-    private native byte[] commit(String... coefficients);
-    private native byte[] createWitness(String... coefficients);
+    /**
+     * Coefficients are given as a single array of big-endian numbers of the same size, starting with the coefficient
+     * of the highest degree
+     */
+    private native byte[] commit(byte[] coefficients);
+
+    /**
+     * Computes the witnesses of all shareholders in a single call, dividing the polynomial by (X - x) natively
+     * @param coefficients Coefficients of the polynomial, encoded as in commit
+     * @param shareholders Shareholder IDs, encoded with the same size as the coefficients
+     * @return Witness of each shareholder, in the same order
+     */
+    private native byte[][] createWitnesses(byte[] coefficients, byte[] shareholders);
 
     /**
      * Returns e(C, g) / e(w_x, g^a / g^i)
@@ -24,10 +35,17 @@ public class Pairing {
      * @return e(C, g) / e(w_x, g^a / g^i)
      */
     private native byte[] computePartialVerification(byte[] x, byte[] commitment, byte[] witness);
-    private native boolean verify(byte[] x, byte[] y, byte[] witness);
+
+    /**
+     * Creates a native verification context holding e(C, g). Each context is independent, therefore shares of
+     * different commitments can be verified concurrently.
+     * @param commitment Commitment
+     * @return Handle of the context, which must be released with destroyVerificationContext
+     */
+    private native long createVerificationContext(byte[] commitment);
+    private native boolean verify(long context, byte[] x, byte[] y, byte[] witness);
     private native boolean verifyWithoutPreComputation(byte[] x, byte[] y, byte[] commitment, byte[] witness);
-    public native void endVerification();
-    public native void startVerification(byte[] commitment);
+    private native void destroyVerificationContext(long context);
 
     public native byte[] multiplyValues(byte[]... values);
 
@@ -44,10 +62,13 @@ public class Pairing {
     public native void close();
 
     private final BigInteger order;
+    private final int coefficientSize;
 
     public Pairing(int threshold) {
         initialize(threshold);
-        this.order = new BigInteger(1, getOrderBytes());
+        byte[] orderBytes = getOrderBytes();
+        this.order = new BigInteger(1, orderBytes);
+        this.coefficientSize = orderBytes.length;
     }
 
     public BigInteger getOrder() {
@@ -55,32 +76,41 @@ public class Pairing {
     }
 
     byte[] commitGivenCoefficients(BigInteger... coefficients) {
-        String[] stringCoefficients = toStringArray(coefficients);
-        return commit(stringCoefficients);
+        return commit(toByteArray(coefficients));
     }
 
-    byte[] createWitnessGivenCoefficients(BigInteger... coefficients) {
-        String[] stringCoefficients = toStringArray(coefficients);
-        return createWitness(stringCoefficients);
+    byte[][] createWitnessesGivenCoefficients(BigInteger[] coefficients, BigInteger[] shareholders) {
+        return createWitnesses(toByteArray(coefficients), toByteArray(shareholders));
     }
 
     byte[] computePartialResult(BigInteger x, ConstantCommitment commitment) {
        return computePartialVerification(x.toByteArray(), commitment.getCommitment(), commitment.getWitness(x));
     }
 
-    boolean verifyShare(BigInteger shareholder, BigInteger share, byte[] witness) {
-        return verify(shareholder.toByteArray(), share.toByteArray(), witness);
+    long startVerification(byte[] commitment) {
+        return createVerificationContext(commitment);
+    }
+
+    boolean verifyShare(long verificationContext, BigInteger shareholder, BigInteger share, byte[] witness) {
+        return verify(verificationContext, shareholder.toByteArray(), share.toByteArray(), witness);
+    }
+
+    void endVerification(long verificationContext) {
+        destroyVerificationContext(verificationContext);
     }
 
     boolean verifyShareWithoutPreComputation(BigInteger shareholder, BigInteger share, byte[] commitment, byte[] witness) {
         return verifyWithoutPreComputation(shareholder.toByteArray(), share.toByteArray(), commitment, witness);
     }
 
-    private static String[] toStringArray(BigInteger... numbers) {
-        String[] result = new String[numbers.length];
+    private byte[] toByteArray(BigInteger... numbers) {
+        byte[] result = new byte[numbers.length * coefficientSize];
 
         for (int i = 0; i < numbers.length; i++) {
-            result[i] = numbers[i].toString(16);
+            byte[] number = numbers[i].mod(order).toByteArray();
+            // drops the sign byte and aligns the number to the right of its slot
+            int length = Math.min(number.length, coefficientSize);
+            System.arraycopy(number, number.length - length, result, (i + 1) * coefficientSize - length, length);
         }
         return result;
     }
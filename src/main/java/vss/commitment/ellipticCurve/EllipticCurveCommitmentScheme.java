@@ -1,7 +1,11 @@
 package vss.commitment.ellipticCurve;
 
+import org.bouncycastle.math.ec.ECAlgorithms;
 import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECMultiplier;
 import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.bouncycastle.math.ec.FixedPointUtil;
 import vss.commitment.Commitment;
 import vss.commitment.CommitmentScheme;
 import vss.commitment.CommitmentType;
@@ -13,6 +17,11 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -21,8 +30,12 @@ import java.util.Map;
  * @author robin
  */
 public class EllipticCurveCommitmentScheme implements CommitmentScheme {
+	// Size of the random scalars used in the small-exponent batch verification test
+	private static final int BATCH_VERIFICATION_EXPONENT_BITS = 64;
 	private final ECCurve curve;
 	private final ECPoint generator;
+	private final ECMultiplier generatorMultiplier = new FixedPointCombMultiplier();
+	private final SecureRandom rndGenerator = new SecureRandom();
 
 	public EllipticCurveCommitmentScheme(BigInteger prime, BigInteger order, BigInteger a, BigInteger b, byte[] compressedGenerator) {
 		BigInteger cofactor = prime.divide(order);
@@ -45,6 +58,23 @@ public class EllipticCurveCommitmentScheme implements CommitmentScheme {
 		return curve.getOrder();
 	}
 
+	/**
+	 * Builds the fixed-base comb table of the generator. The table is attached to the generator point, therefore it
+	 * is computed only once and shared by all the threads using this scheme.
+	 */
+	public void precomputeGeneratorTable() {
+		FixedPointUtil.precompute(generator);
+	}
+
+	/**
+	 * Computes generator * k using the fixed-base comb table of the generator
+	 * @param k Scalar
+	 * @return generator * k
+	 */
+	private ECPoint multiplyGenerator(BigInteger k) {
+		return generatorMultiplier.multiply(generator, k.mod(curve.getOrder()));
+	}
+
 	public byte[] encodePoint(ECPoint point) {
 		return point.getEncoded(true);
 	}
@@ -60,7 +90,7 @@ public class EllipticCurveCommitmentScheme implements CommitmentScheme {
 
 		ECPoint[] commitment = new ECPoint[degree + 1];
 		for (int i = 0; i < coefficients.length; i++) {
-			commitment[i] = generator.multiply(coefficients[i]);
+			commitment[i] = multiplyGenerator(coefficients[i]);
 		}
 		return new EllipticCurveCommitment(commitment, curve);
 	}
@@ -87,22 +117,33 @@ public class EllipticCurveCommitmentScheme implements CommitmentScheme {
 
 	@Override
 	public boolean checkValidity(Share share, Commitment commitment) {
-		ECPoint leftSide = generator.multiply(share.getShare());
+		ECPoint leftSide = multiplyGenerator(share.getShare());
 		ECPoint rightSide = computeRightSideOfVerification(share.getShareholder(),
 				(EllipticCurveCommitment) commitment);
 		return leftSide.equals(rightSide);
 	}
 
+	/**
+	 * Returns c[0] * x^t + ... + c[t-1] * x + c[t], computed as a single multi-scalar multiplication
+	 * (interleaved wNAF, i.e., Straus' method) instead of t separate scalar multiplications
+	 * @param x Shareholder ID
+	 * @param commitment Commitment of the polynomial
+	 * @return c[0] * x^t + ... + c[t-1] * x + c[t]
+	 */
 	private ECPoint computeRightSideOfVerification(BigInteger x, EllipticCurveCommitment commitment) {
 		ECPoint[] c = commitment.getCommitment();
-
-		ECPoint gp = c[c.length - 1];
-		for (int i = 0; i < c.length - 1; i++) {
-			int k = c.length - 1 - i;
-			gp = gp.add(c[i].multiply(x.pow(k)));
+		if (c.length == 1)
+			return c[0];
+
+		BigInteger order = curve.getOrder();
+		BigInteger[] exponents = new BigInteger[c.length];
+		BigInteger power = BigInteger.ONE;
+		for (int i = c.length - 1; i >= 0; i--) {
+			exponents[i] = power;
+			power = power.multiply(x).mod(order);
 		}
 
-		return gp;
+		return ECAlgorithms.sumOfMultiplies(c, exponents);
 	}
 
 	@Override
@@ -122,6 +163,61 @@ public class EllipticCurveCommitmentScheme implements CommitmentScheme {
 		return checkValidity(share, commitment);
 	}
 
+	@Override
+	public boolean[] checkValidityBatch(Share[] shares, Commitment[] commitments) {
+		boolean[] result = new boolean[shares.length];
+		if (shares.length > 1 && isValidBatch(shares, commitments)) {
+			Arrays.fill(result, true);
+			return result;
+		}
+		for (int i = 0; i < shares.length; i++) {
+			result[i] = checkValidity(shares[i], commitments[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Small-exponent batch verification of shares (i_k, P_k(i_k)) using random r_k:
+	 * (r_1*P_1(i_1) + ... + r_n*P_n(i_n)) * G ?= sum_k (r_k*i_k^t) * c_k[0] + ... + r_k * c_k[t].
+	 * Scalars of shares verified against the same commitment are aggregated and the right side is computed
+	 * as a single multi-scalar multiplication
+	 * @param shares Shares to verify
+	 * @param commitments Commitments of the polynomials
+	 * @return True if all the shares are valid, false if at least one share is invalid (with high probability)
+	 */
+	private boolean isValidBatch(Share[] shares, Commitment[] commitments) {
+		BigInteger leftSideScalar = BigInteger.ZERO;
+		Map<Commitment, BigInteger[]> rightSideScalars = new IdentityHashMap<>();
+		for (int k = 0; k < shares.length; k++) {
+			BigInteger r = new BigInteger(BATCH_VERIFICATION_EXPONENT_BITS, rndGenerator);
+			leftSideScalar = leftSideScalar.add(r.multiply(shares[k].getShare()));
+
+			int nCoefficients = ((EllipticCurveCommitment) commitments[k]).getCommitment().length;
+			BigInteger[] scalars = rightSideScalars.computeIfAbsent(commitments[k], c -> {
+				BigInteger[] zeros = new BigInteger[nCoefficients];
+				Arrays.fill(zeros, BigInteger.ZERO);
+				return zeros;
+			});
+			BigInteger x = shares[k].getShareholder();
+			BigInteger power = r;
+			for (int j = scalars.length - 1; j >= 0; j--) {
+				scalars[j] = scalars[j].add(power);
+				power = power.multiply(x);
+			}
+		}
+
+		List<ECPoint> points = new ArrayList<>();
+		List<BigInteger> scalars = new ArrayList<>();
+		for (Map.Entry<Commitment, BigInteger[]> entry : rightSideScalars.entrySet()) {
+			points.addAll(Arrays.asList(((EllipticCurveCommitment) entry.getKey()).getCommitment()));
+			scalars.addAll(Arrays.asList(entry.getValue()));
+		}
+		ECPoint rightSide = ECAlgorithms.sumOfMultiplies(points.toArray(new ECPoint[0]),
+				scalars.toArray(new BigInteger[0]));
+
+		return multiplyGenerator(leftSideScalar).equals(rightSide);
+	}
+
 	@Override
 	public Commitment sumCommitments(Commitment... commitments) throws SecretSharingException {
 		int size = ((EllipticCurveCommitment) commitments[0]).getCommitment().length;
@@ -12,8 +12,15 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class implements Feldman Verifiable Secret Sharing scheme (only commitments)
@@ -21,16 +28,113 @@ import java.util.Map;
  * @author Robin
  */
 public class FeldmanCommitmentScheme implements CommitmentScheme {
+    // Size of the random exponents used in the small-exponent batch verification test
+    private static final int BATCH_VERIFICATION_EXPONENT_BITS = 64;
+    // Window size and maximum exponent size covered by the fixed-base table of the generator
+    private static final int FIXED_BASE_WINDOW_BITS = 4;
+    private static final int FIXED_BASE_MAX_EXPONENT_BITS = 512;
     /*
      * Generator of multiplicative cyclic group p of order q.
      * p and q are prime numbers.
      */
     private final BigInteger generator;
     private final BigInteger p;
+    /*
+     * Order q of the subgroup generated by the generator, or null if unknown, in which case shares are never verified
+     * in batch
+     */
+    private final BigInteger q;
+    private final SecureRandom rndGenerator;
+    /*
+     * generatorTable[i][d] = g^(d * 2^(FIXED_BASE_WINDOW_BITS * i)) mod p
+     */
+    private final BigInteger[][] generatorTable;
+    /*
+     * Shareholder id -> [1, i, i^2, ..., i^t] mod p. Only registered shareholders are cached, since share
+     * shareholders may come from clients.
+     */
+    private final Map<BigInteger, BigInteger[]> shareholderPowers;
+    private final Set<BigInteger> shareholders;
 
     public FeldmanCommitmentScheme(BigInteger p, BigInteger generator) {
+        this(p, generator, null);
+    }
+
+    public FeldmanCommitmentScheme(BigInteger p, BigInteger generator, BigInteger q) {
+        this(p, generator, q, new BigInteger[0]);
+    }
+
+    /**
+     * @param p Prime modulus
+     * @param generator Generator of the subgroup of order q
+     * @param q Order of the subgroup, used to check that commitments belong to it before verifying shares in batch
+     * @param shareholders Current shareholders, whose powers are cached
+     */
+    public FeldmanCommitmentScheme(BigInteger p, BigInteger generator, BigInteger q, BigInteger[] shareholders) {
         this.p = p;
         this.generator = generator;
+        this.q = q;
+        this.rndGenerator = new SecureRandom();
+        this.generatorTable = computeGeneratorTable();
+        this.shareholderPowers = new ConcurrentHashMap<>();
+        this.shareholders = ConcurrentHashMap.newKeySet();
+        this.shareholders.addAll(Arrays.asList(shareholders));
+    }
+
+    private BigInteger[][] computeGeneratorTable() {
+        int windows = (FIXED_BASE_MAX_EXPONENT_BITS + FIXED_BASE_WINDOW_BITS - 1) / FIXED_BASE_WINDOW_BITS;
+        int windowSize = 1 << FIXED_BASE_WINDOW_BITS;
+        BigInteger[][] table = new BigInteger[windows][windowSize];
+        BigInteger base = generator.mod(p);
+        for (int i = 0; i < windows; i++) {
+            table[i][0] = BigInteger.ONE;
+            for (int d = 1; d < windowSize; d++) {
+                table[i][d] = table[i][d - 1].multiply(base).mod(p);
+            }
+            base = table[i][windowSize - 1].multiply(base).mod(p);
+        }
+        return table;
+    }
+
+    /**
+     * Computes g^exponent mod p using the fixed-base table of the generator. Falls back to modPow for
+     * exponents not covered by the table.
+     * @param exponent Exponent
+     * @return g^exponent mod p
+     */
+    private BigInteger powGenerator(BigInteger exponent) {
+        if (exponent.signum() < 0 || exponent.bitLength() > FIXED_BASE_MAX_EXPONENT_BITS)
+            return generator.modPow(exponent, p);
+        int mask = (1 << FIXED_BASE_WINDOW_BITS) - 1;
+        int windows = (exponent.bitLength() + FIXED_BASE_WINDOW_BITS - 1) / FIXED_BASE_WINDOW_BITS;
+        BigInteger result = BigInteger.ONE;
+        for (int i = 0; i < windows; i++) {
+            int d = exponent.shiftRight(i * FIXED_BASE_WINDOW_BITS).intValue() & mask;
+            if (d != 0)
+                result = result.multiply(generatorTable[i][d]).mod(p);
+        }
+        return result;
+    }
+
+    /**
+     * Returns [1, x, x^2, ..., x^(n-1)] mod p, reusing the powers previously computed for this shareholder if it is
+     * registered
+     * @param x Shareholder ID
+     * @param n Number of powers
+     * @return Array with at least n powers of x
+     */
+    private BigInteger[] getShareholderPowers(BigInteger x, int n) {
+        BigInteger[] powers = shareholderPowers.get(x);
+        if (powers != null && powers.length >= n)
+            return powers;
+        powers = new BigInteger[n];
+        powers[0] = BigInteger.ONE;
+        for (int t = 1; t < n; t++) {
+            powers[t] = powers[t - 1].multiply(x).mod(p);
+        }
+        if (shareholders.contains(x))
+            shareholderPowers.put(x, powers);
+        return powers;
     }
 
     @Override
@@ -40,7 +144,7 @@ public class FeldmanCommitmentScheme implements CommitmentScheme {
 
         BigInteger[] commitments = new BigInteger[degree + 1];
         for (int i = coefficients.length - degree - 1, j = 0; i < coefficients.length; i++, j++) {
-            commitments[j] = generator.modPow(coefficients[i], p);
+            commitments[j] = powGenerator(coefficients[i]);
         }
         return new LinearCommitments(commitments);
     }
@@ -57,12 +161,13 @@ public class FeldmanCommitmentScheme implements CommitmentScheme {
 
     @Override
     public void addShareholder(BigInteger shareholder) {
-
+        shareholders.add(shareholder);
     }
 
     @Override
     public void removeShareholder(BigInteger shareholder) {
-
+        shareholders.remove(shareholder);
+        shareholderPowers.remove(shareholder);
     }
 
     /**
@@ -76,7 +181,7 @@ public class FeldmanCommitmentScheme implements CommitmentScheme {
     @Override
     public boolean checkValidity(Share share, Commitment commitment) {
         LinearCommitments commitments = (LinearCommitments)commitment;
-        BigInteger gs = generator.modPow(share.getShare(), p);
+        BigInteger gs = powGenerator(share.getShare());
         BigInteger gp = computeRightSideOfVerification(share.getShareholder(), commitments);
 
         return gs.equals(gp);
@@ -91,10 +196,11 @@ public class FeldmanCommitmentScheme implements CommitmentScheme {
     private BigInteger computeRightSideOfVerification(BigInteger x, LinearCommitments commitments) {
         BigInteger[] c = commitments.getCommitments();
 
+        BigInteger[] powers = getShareholderPowers(x, c.length);
+
         BigInteger gp = BigInteger.ONE;
         for (int j = 0,t = c.length - 1; j < c.length; j++, t--) {
-            BigInteger ij = x.modPow(BigInteger.valueOf(t), p); //TODO pre-compute
-            gp = gp.multiply(c[j].modPow(ij, p)).mod(p);
+            gp = gp.multiply(c[j].modPow(powers[t], p)).mod(p);
         }
 
         return gp;
@@ -117,6 +223,85 @@ public class FeldmanCommitmentScheme implements CommitmentScheme {
         return checkValidity(share, commitment);
     }
 
+    /**
+     * Shares are grouped by commitment. Shares of commitments shared with other shares are verified in batch, while
+     * shares with their own commitment are verified one by one, since a sound batch across different commitments
+     * requires checking that all their values belong to the subgroup, which costs more than verifying the shares.
+     */
+    @Override
+    public boolean[] checkValidityBatch(Share[] shares, Commitment[] commitments) {
+        boolean[] result = new boolean[shares.length];
+        if (q == null || shares.length <= 1) {
+            for (int i = 0; i < shares.length; i++) {
+                result[i] = checkValidity(shares[i], commitments[i]);
+            }
+            return result;
+        }
+        Map<Commitment, List<Integer>> sharesPerCommitment = new IdentityHashMap<>();
+        for (int i = 0; i < shares.length; i++) {
+            sharesPerCommitment.computeIfAbsent(commitments[i], c -> new ArrayList<>(1)).add(i);
+        }
+        List<List<Integer>> batch = new ArrayList<>(sharesPerCommitment.size());
+        for (List<Integer> indexes : sharesPerCommitment.values()) {
+            if (indexes.size() > 1) {
+                batch.add(indexes);
+            } else {
+                int i = indexes.get(0);
+                result[i] = checkValidity(shares[i], commitments[i]);
+            }
+        }
+        if (batch.isEmpty())
+            return result;
+        boolean isValidBatch = isValidBatch(shares, commitments, batch);
+        for (List<Integer> indexes : batch) {
+            for (int i : indexes) {
+                result[i] = isValidBatch || checkValidity(shares[i], commitments[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Small-exponent batch verification of shares (i_k, P_k(i_k)) using random r_k:
+     * g^(r_1*P_1(i_1) + ... + r_n*P_n(i_n)) ?= prod_k (g^a_kt)^(r_k*i_k^t) * ... * (g^a_k0)^(r_k).
+     * Exponents of shares verified against the same commitment are aggregated, so each commitment costs only one
+     * exponentiation per coefficient. The test is only sound if the commitments belong to the subgroup of order q,
+     * otherwise a share of a commitment multiplied by an element of small order (e.g., -1) passes with high
+     * probability, therefore each commitment value is checked to belong to the subgroup.
+     * @param shares Shares to verify
+     * @param commitments Commitments of the polynomials
+     * @param batch Indexes of the shares of each commitment to verify
+     * @return True if all the shares are valid, false if at least one share is invalid (with high probability) or
+     * a commitment does not belong to the subgroup
+     */
+    private boolean isValidBatch(Share[] shares, Commitment[] commitments, List<List<Integer>> batch) {
+        Set<BigInteger> subgroupElements = new HashSet<>();
+        BigInteger leftSideExponent = BigInteger.ZERO;
+        BigInteger rightSide = BigInteger.ONE;
+        for (List<Integer> indexes : batch) {
+            BigInteger[] c = ((LinearCommitments) commitments[indexes.get(0)]).getCommitments();
+            for (BigInteger value : c) {
+                if (subgroupElements.add(value) && !value.modPow(q, p).equals(BigInteger.ONE))
+                    return false;
+            }
+            BigInteger[] exponents = new BigInteger[c.length];
+            Arrays.fill(exponents, BigInteger.ZERO);
+            for (int k : indexes) {
+                BigInteger r = new BigInteger(BATCH_VERIFICATION_EXPONENT_BITS, rndGenerator);
+                leftSideExponent = leftSideExponent.add(r.multiply(shares[k].getShare()));
+                BigInteger[] powers = getShareholderPowers(shares[k].getShareholder(), exponents.length);
+                for (int j = 0, t = exponents.length - 1; j < exponents.length; j++, t--) {
+                    exponents[j] = exponents[j].add(r.multiply(powers[t]));
+                }
+            }
+            for (int j = 0; j < c.length; j++) {
+                rightSide = rightSide.multiply(c[j].modPow(exponents[j], p)).mod(p);
+            }
+        }
+
+        return powGenerator(leftSideExponent).equals(rightSide);
+    }
+
     @Override
     public Commitment sumCommitments(Commitment... commitments) throws SecretSharingException {
         int size = ((LinearCommitments) commitments[0]).getCommitments().length;
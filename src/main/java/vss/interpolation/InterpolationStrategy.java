@@ -21,6 +21,16 @@ public interface InterpolationStrategy {
      */
     BigInteger interpolateAt(BigInteger x, Share[] shares);
 
+    /**
+     * This method interpolates several polynomials defined over the same shareholders and returns their values
+     * evaluated at x.
+     * @param x Value of x
+     * @param shareholders Shareholders whose shares are used to interpolate the polynomials
+     * @param shares Shares of each polynomial, where shares[k][i] is the share of shareholders[i] for polynomial k
+     * @return Value of y of each polynomial
+     */
+    BigInteger[] interpolateAt(BigInteger x, BigInteger[] shareholders, BigInteger[]... shares);
+
     /**
      * This method interpolates polynomial using share.length and returns it. The polynomial will have at most degree shares.length - 1
      * @param shares Shares used to interpolate polynomial
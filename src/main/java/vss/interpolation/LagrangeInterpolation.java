@@ -5,15 +5,22 @@ import vss.polynomial.Polynomial;
 import vss.secretsharing.Share;
 
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class implements Lagrange Interpolation equations.
- * All the computations are done on a finite field
+ * All the computations are done on a finite field.
+ * Lagrange coefficients are cached by shareholders and evaluation point, since the same few subsets of
+ * shareholders are used to interpolate most polynomials.
  *
  * @author Robin
  */
 public class LagrangeInterpolation implements InterpolationStrategy {
+    private static final int MAX_CACHED_COEFFICIENTS = 1024;
     private final BigInteger field;
+    private final Map<CoefficientsKey, BigInteger[]> coefficientsCache;
 
     /**
      * Instantiates object to allow interpolation of polynomials and computation of points on it in finite field filed
@@ -21,6 +28,7 @@ public class LagrangeInterpolation implements InterpolationStrategy {
      */
     public LagrangeInterpolation(BigInteger field) {
         this.field = field;
+        this.coefficientsCache = new ConcurrentHashMap<>();
     }
 
     /**
@@ -31,24 +39,79 @@ public class LagrangeInterpolation implements InterpolationStrategy {
      */
     @Override
     public BigInteger interpolateAt(BigInteger x, Share[] shares){
+        BigInteger[] shareholders = new BigInteger[shares.length];
+        for (int i = 0; i < shares.length; i++) {
+            shareholders[i] = shares[i].getShareholder();
+        }
+        BigInteger[] coefficients = getCoefficients(x, shareholders);
         BigInteger result = BigInteger.ZERO;
+        for (int i = 0; i < shares.length; i++) {
+            result = result.add(coefficients[i].multiply(shares[i].getShare()));
+        }
 
-        for (Share i : shares) {
-            BigInteger numerator = BigInteger.ONE;
-            BigInteger denominator = BigInteger.ONE;
-            for (Share j : shares) {
-                if (i.getShareholder().equals(j.getShareholder()))
-                    continue;
-                numerator = numerator.multiply(x.subtract(j.getShareholder()));
-                denominator = denominator.multiply(i.getShareholder().subtract(j.getShareholder()));
+        return result.mod(field);
+    }
+
+    @Override
+    public BigInteger[] interpolateAt(BigInteger x, BigInteger[] shareholders, BigInteger[]... shares) {
+        BigInteger[] coefficients = getCoefficients(x, shareholders);
+        BigInteger[] result = new BigInteger[shares.length];
+        for (int k = 0; k < shares.length; k++) {
+            BigInteger y = BigInteger.ZERO;
+            for (int i = 0; i < coefficients.length; i++) {
+                y = y.add(coefficients[i].multiply(shares[k][i]));
             }
-            denominator = denominator.modInverse(field);
-            result = result.add(numerator.multiply(denominator).multiply(i.getShare())).mod(field);
+            result[k] = y.mod(field);
         }
-
         return result;
     }
 
+    /**
+     * Returns the Lagrange coefficients l_i(x) = prod_(j != i) (x - x_j) / (x_i - x_j) of the shareholders
+     * @param x Value of x
+     * @param shareholders Shareholders x_i
+     * @return Coefficient of each shareholder. Must not be modified.
+     */
+    public BigInteger[] getCoefficients(BigInteger x, BigInteger[] shareholders) {
+        CoefficientsKey key = new CoefficientsKey(x, shareholders);
+        BigInteger[] coefficients = coefficientsCache.get(key);
+        if (coefficients == null) {
+            coefficients = computeCoefficients(x, shareholders);
+            if (coefficientsCache.size() >= MAX_CACHED_COEFFICIENTS)
+                coefficientsCache.clear();
+            coefficientsCache.put(new CoefficientsKey(x, shareholders.clone()), coefficients);
+        }
+        return coefficients;
+    }
+
+    private BigInteger[] computeCoefficients(BigInteger x, BigInteger[] shareholders) {
+        int n = shareholders.length;
+        // numerator of i is prefix[i] * suffix[i + 1]
+        BigInteger[] prefix = new BigInteger[n + 1];
+        BigInteger[] suffix = new BigInteger[n + 1];
+        prefix[0] = BigInteger.ONE;
+        suffix[n] = BigInteger.ONE;
+        for (int i = 0; i < n; i++) {
+            prefix[i + 1] = prefix[i].multiply(x.subtract(shareholders[i])).mod(field);
+            suffix[n - i - 1] = suffix[n - i].multiply(x.subtract(shareholders[n - i - 1])).mod(field);
+        }
+
+        BigInteger[] denominators = new BigInteger[n];
+        for (int i = 0; i < n; i++) {
+            BigInteger denominator = BigInteger.ONE;
+            for (int j = 0; j < n; j++) {
+                if (i != j)
+                    denominator = denominator.multiply(shareholders[i].subtract(shareholders[j])).mod(field);
+            }
+            denominators[i] = denominator;
+        }
+        BigInteger[] coefficients = Polynomial.batchInverse(field, denominators);
+        for (int i = 0; i < n; i++) {
+            coefficients[i] = coefficients[i].multiply(prefix[i]).multiply(suffix[i + 1]).mod(field);
+        }
+        return coefficients;
+    }
+
     /**
      * Returns interpolated polynomial
      * @param shares Shares used to interpolate polynomial
@@ -69,4 +132,29 @@ public class LagrangeInterpolation implements InterpolationStrategy {
     public void removeShareholder(BigInteger shareholder) {
 
     }
+
+    private static final class CoefficientsKey {
+        private final BigInteger x;
+        private final BigInteger[] shareholders;
+        private final int hashCode;
+
+        private CoefficientsKey(BigInteger x, BigInteger[] shareholders) {
+            this.x = x;
+            this.shareholders = shareholders;
+            this.hashCode = 31 * x.hashCode() + Arrays.hashCode(shareholders);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CoefficientsKey that = (CoefficientsKey) o;
+            return hashCode == that.hashCode && x.equals(that.x) && Arrays.equals(shareholders, that.shareholders);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
 }
@@ -63,34 +63,46 @@ public class Polynomial {
      */
     public Polynomial(BigInteger field, Share[] shares) throws SecretSharingException {
         this.field = field;
-        for (int i = 0; i < shares.length; i++) {
-            BigInteger denominator = BigInteger.ONE;
+        int n = shares.length;
+        if (n < 2)
+            throw new SecretSharingException("This should not happen!");
+
+        // N(X) = (X - x_0)...(X - x_n-1)
+        BigInteger[] product = new BigInteger[n + 1];
+        Arrays.fill(product, BigInteger.ZERO);
+        product[n] = BigInteger.ONE;
+        for (int m = 0; m < n; m++) {
+            BigInteger x = shares[m].getShareholder();
+            for (int k = n - m - 1; k < n; k++) {
+                product[k] = product[k + 1].subtract(x.multiply(product[k])).mod(field);
+            }
+            product[n] = x.multiply(product[n]).negate().mod(field);
+        }
+
+        BigInteger[] denominators = new BigInteger[n];
+        for (int i = 0; i < n; i++) {
             BigInteger j = shares[i].getShareholder();
-            BigInteger[] numerator = null;
-            for (int m = 0; m < shares.length; m++) {
-                if (i == m)
-                    continue;
-                BigInteger[] currentNumerator = {
-                        BigInteger.ONE, shares[m].getShareholder().negate()
-                };
-                if (numerator == null)
-                    numerator = currentNumerator;
-                else
-                    numerator = multiply(numerator, currentNumerator);
-                denominator = denominator.multiply(j.subtract(shares[m].getShareholder())).mod(field);
+            BigInteger denominator = BigInteger.ONE;
+            for (int m = 0; m < n; m++) {
+                if (i != m)
+                    denominator = denominator.multiply(j.subtract(shares[m].getShareholder())).mod(field);
             }
+            denominators[i] = denominator;
+        }
+        denominators = batchInverse(field, denominators);
 
-            denominator = denominator.modInverse(field).multiply(shares[i].getShare()).mod(field);
-            if (numerator == null)
-                throw new SecretSharingException("This should not happen!");
-            numerator = multiply(numerator, denominator);
-            if (polynomial == null)
-                polynomial = numerator;
-            else
-                polynomial = add(field, polynomial, numerator);
+        // numerator of share i is N(X) / (X - x_i), computed using synthetic division
+        polynomial = new BigInteger[n];
+        Arrays.fill(polynomial, BigInteger.ZERO);
+        for (int i = 0; i < n; i++) {
+            BigInteger j = shares[i].getShareholder();
+            BigInteger factor = denominators[i].multiply(shares[i].getShare()).mod(field);
+            BigInteger numerator = BigInteger.ZERO;
+            for (int k = 0; k < n; k++) {
+                numerator = product[k].add(numerator.multiply(j)).mod(field);
+                polynomial[k] = polynomial[k].add(numerator.multiply(factor)).mod(field);
+            }
         }
-        if (polynomial == null)
-            throw new SecretSharingException("This should not happen!");
         this.degree = computeDegree(polynomial);
     }
 
@@ -148,6 +160,31 @@ public class Polynomial {
         return p1;
     }
 
+    /**
+     * Inverts all values with a single modular inversion using Montgomery's trick
+     * @param field Finite field
+     * @param values Values to invert
+     * @return Inverse of each value
+     * @throws ArithmeticException If some value is not invertible
+     */
+    public static BigInteger[] batchInverse(BigInteger field, BigInteger... values) {
+        BigInteger[] result = new BigInteger[values.length];
+        if (values.length == 0)
+            return result;
+        // result[i] = values[0] * ... * values[i - 1]
+        BigInteger accumulator = BigInteger.ONE;
+        for (int i = 0; i < values.length; i++) {
+            result[i] = accumulator;
+            accumulator = accumulator.multiply(values[i]).mod(field);
+        }
+        BigInteger inverse = accumulator.modInverse(field);
+        for (int i = values.length - 1; i >= 0; i--) {
+            result[i] = result[i].multiply(inverse).mod(field);
+            inverse = inverse.multiply(values[i]).mod(field);
+        }
+        return result;
+    }
+
     public static BigInteger[] divide(BigInteger field, BigInteger[] dividend, BigInteger[] divisor) {
         int divisorDegree = computeDegree(divisor);
         int dividendDegree = computeDegree(dividend);
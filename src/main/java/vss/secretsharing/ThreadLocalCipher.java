@@ -0,0 +1,86 @@
+package vss.secretsharing;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gives each thread its own Cipher instances of a given algorithm, so encryptions and decryptions done by different
+ * threads do not need to be serialized. If caching of keys is enabled, each thread also keeps its ciphers
+ * initialized with the keys it used recently, avoiding calling cipher.init for every operation.
+ * Ciphers whose mode requires an IV are always initialized again.
+ */
+public final class ThreadLocalCipher {
+    private static final int MAX_CACHED_KEYS = 64;
+    private final String algorithm;
+    private final boolean cacheKeys;
+    private final ThreadLocal<Cipher> ciphers;
+    private final ThreadLocal<Map<Key, Cipher>> encryptionCiphers;
+    private final ThreadLocal<Map<Key, Cipher>> decryptionCiphers;
+
+    /**
+     * @param algorithm Cipher transformation
+     * @param cacheKeys True if ciphers initialized with a key should be reused for later operations with the same
+     *                  key. Should be false when keys are rarely reused.
+     * @throws NoSuchAlgorithmException If algorithm is not supported
+     * @throws NoSuchPaddingException If padding scheme is not supported
+     */
+    public ThreadLocalCipher(String algorithm, boolean cacheKeys) throws NoSuchAlgorithmException,
+            NoSuchPaddingException {
+        this.algorithm = algorithm;
+        this.cacheKeys = cacheKeys;
+        Cipher.getInstance(algorithm);
+        this.ciphers = ThreadLocal.withInitial(this::newCipher);
+        this.encryptionCiphers = ThreadLocal.withInitial(HashMap::new);
+        this.decryptionCiphers = ThreadLocal.withInitial(HashMap::new);
+    }
+
+    public byte[] encrypt(byte[] data, Key encryptionKey) throws InvalidKeyException, BadPaddingException,
+            IllegalBlockSizeException {
+        return doFinal(Cipher.ENCRYPT_MODE, encryptionCiphers.get(), data, encryptionKey);
+    }
+
+    public byte[] decrypt(byte[] data, Key decryptionKey) throws InvalidKeyException, BadPaddingException,
+            IllegalBlockSizeException {
+        return doFinal(Cipher.DECRYPT_MODE, decryptionCiphers.get(), data, decryptionKey);
+    }
+
+    private byte[] doFinal(int mode, Map<Key, Cipher> initializedCiphers, byte[] data, Key key)
+            throws InvalidKeyException, BadPaddingException, IllegalBlockSizeException {
+        if (!cacheKeys) {
+            Cipher cipher = ciphers.get();
+            cipher.init(mode, key);
+            return cipher.doFinal(data);
+        }
+        Cipher cipher = initializedCiphers.get(key);
+        if (cipher == null) {
+            cipher = newCipher();
+            cipher.init(mode, key);
+            if (cipher.getIV() != null)
+                return cipher.doFinal(data);
+            if (initializedCiphers.size() >= MAX_CACHED_KEYS)
+                initializedCiphers.clear();
+            initializedCiphers.put(key, cipher);
+        }
+        try {
+            return cipher.doFinal(data);
+        } catch (BadPaddingException | IllegalBlockSizeException e) {
+            initializedCiphers.remove(key); // cipher may be in an inconsistent state
+            throw e;
+        }
+    }
+
+    private Cipher newCipher() {
+        try {
+            return Cipher.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new IllegalStateException("Failed to create cipher for " + algorithm, e); // checked in constructor
+        }
+    }
+}
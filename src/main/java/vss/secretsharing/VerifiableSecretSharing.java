@@ -17,8 +17,6 @@ import javax.crypto.spec.SecretKeySpec;
 import java.math.BigInteger;
 import java.security.*;
 import java.util.*;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Implements Shamir's Secret Sharing scheme.
@@ -30,14 +28,13 @@ public class VerifiableSecretSharing {
     private final String dataEncryptionAlgorithm;
     private final BigInteger field;
     private final SecureRandom rndGenerator;
-    private final Cipher dataCipher;
+    private final ThreadLocalCipher dataCipher;
     protected Map<Integer, BigInteger> shareholders;
     protected final CommitmentScheme commitmentScheme;
     private final InterpolationStrategy interpolationStrategy;
     private final Set<BigInteger> corruptedShareholders;
     private int threshold;
     private final MessageDigest messageDigest;
-    private final Lock dataEncryptionLock;
 
     public VerifiableSecretSharing(Properties properties, BigInteger[] shareholders) throws SecretSharingException {
         if (properties == null || shareholders == null)
@@ -49,8 +46,8 @@ public class VerifiableSecretSharing {
         if (commitmentSchemeName.equals(Constants.VALUE_FELDMAN_SCHEME)) {
             BigInteger p = new BigInteger(properties.getProperty(Constants.TAG_PRIME_FIELD), 16);
             BigInteger generator = new BigInteger(properties.getProperty(Constants.TAG_GENERATOR), 16);
-            this.commitmentScheme = new FeldmanCommitmentScheme(p, generator);
             this.field = new BigInteger(properties.getProperty(Constants.TAG_SUB_FIELD), 16);
+            this.commitmentScheme = new FeldmanCommitmentScheme(p, generator, field, shareholders);
         } else if (commitmentSchemeName.equals(Constants.VALUE_KATE_SCHEME)) {
             KateCommitmentScheme kateCommitmentScheme = new KateCommitmentScheme(threshold, shareholders);
             this.field = kateCommitmentScheme.getPrimeFieldOrder();
@@ -64,7 +61,7 @@ public class VerifiableSecretSharing {
         this.corruptedShareholders = new HashSet<>();
 
         try {
-            dataCipher = Cipher.getInstance(dataEncryptionAlgorithm);
+            dataCipher = new ThreadLocalCipher(dataEncryptionAlgorithm, false);
         } catch (NoSuchPaddingException | NoSuchAlgorithmException e) {
             throw new SecretSharingException("Cipher initialization error.", e);
         }
@@ -82,7 +79,6 @@ public class VerifiableSecretSharing {
             else
                 this.shareholders.put(shareholder.hashCode(), shareholder);
         }
-        dataEncryptionLock = new ReentrantLock(true);
         CommitmentUtils.initialize(commitmentScheme);
     }
 
@@ -156,7 +152,7 @@ public class VerifiableSecretSharing {
                     byte[] secretKeyBytes = messageDigest.digest(secretAsNumber.toByteArray());
 
                     SecretKey key = new SecretKeySpec(secretKeyBytes, dataEncryptionAlgorithm);
-                    sharedData = encrypt(dataCipher, data, key, dataEncryptionLock);
+                    sharedData = dataCipher.encrypt(data, key);
                     break;
                 case SMALL_SECRET:
                     secretAsNumber = new BigInteger(data);
@@ -236,7 +232,7 @@ public class VerifiableSecretSharing {
                 byte[] keyBytes = messageDigest.digest(secretKeyAsNumber.toByteArray());
                 SecretKey secretKey = new SecretKeySpec(keyBytes, dataEncryptionAlgorithm);
                 try {
-                    return decrypt(dataCipher, openShares.getSharedData(), secretKey, dataEncryptionLock);
+                    return dataCipher.decrypt(openShares.getSharedData(), secretKey);
                 } catch (InvalidKeyException | BadPaddingException | IllegalBlockSizeException e) {
                     throw new SecretSharingException("Error while decrypting secret!", e);
                 }
@@ -247,42 +243,4 @@ public class VerifiableSecretSharing {
         }
 
     }
-
-    /**
-     * Encrypts given data using cipher with encryptionKey of corresponding algorithm used to instantiate cipher
-     * @param cipher Cipher used to encrypt data
-     * @param data Data to encrypt
-     * @param encryptionKey Encryption key
-     * @return Encrypted data
-     * @throws InvalidKeyException When encryptionKey is invalid
-     * @throws BadPaddingException When fails to encrypt
-     * @throws IllegalBlockSizeException When fails to encrypt
-     */
-    protected static byte[] encrypt(Cipher cipher, byte[] data, Key encryptionKey, Lock encryptionLock) throws InvalidKeyException,
-            BadPaddingException, IllegalBlockSizeException {
-        encryptionLock.lock();
-        cipher.init(Cipher.ENCRYPT_MODE, encryptionKey);
-        byte[] result = cipher.doFinal(data);
-        encryptionLock.unlock();
-        return result;
-    }
-
-    /**
-     * Decrypts a data using cipher if corresponding decryption key is valid
-     * @param cipher Cipher used to decrypt data
-     * @param data Encrypted data
-     * @param decryptionKey Decryption key
-     * @return Decrypted data
-     * @throws InvalidKeyException When decryptionKey is invalid
-     * @throws BadPaddingException When fails to encrypt
-     * @throws IllegalBlockSizeException When fails to encrypt
-     */
-    protected static byte[] decrypt(Cipher cipher, byte[] data, Key decryptionKey, Lock encryptionLock) throws InvalidKeyException,
-            BadPaddingException, IllegalBlockSizeException {
-        encryptionLock.lock();
-        cipher.init(Cipher.DECRYPT_MODE, decryptionKey);
-        byte[] result = cipher.doFinal(data);
-        encryptionLock.unlock();
-        return result;
-    }
 }